@@ -13,24 +13,29 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
+import java.lang.management.ManagementFactory;
 import java.net.URLClassLoader;
-import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.util.Base64;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.DoubleConsumer;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static fxlauncher.Strings.ensureEndingSlash;
 
@@ -38,7 +43,22 @@ import static fxlauncher.Strings.ensureEndingSlash;
 public abstract class AbstractLauncher<APP> {
     private static final Logger log = Logger.getLogger("AbstractLauncher");
 
+    private static final int MAX_ATTEMPTS_PER_MIRROR = 2;
+    private static final double COMPLETE_BUNDLE_RATIO = 0.8;
+    private static final double CHUNK_RATIO = 0.5;
+    private static final String STAGING_DIR = ".fxlauncher.staging";
+    private static final String STAGED_MANIFEST = "app.xml";
+    private static final String CHECKED_FILE = ".fxlauncher.checked";
+
     protected static FXManifest manifest;
+    private Mirrors mirrors;
+    private Downloader downloader;
+    private CacheLock cacheLock;
+    private final SyncMetrics metrics = new SyncMetrics();
+    private volatile boolean nativesLoaded;
+    private volatile ClassLoader appClassLoader;
+    private UpdateService updateService;
+    private Exception manifestCheckFailure;
     private SimpleStringProperty phase = new SimpleStringProperty("正在检测更新...");
 
     /**
@@ -71,7 +91,7 @@ public abstract class AbstractLauncher<APP> {
     }
 
     protected ClassLoader createClassLoader(Path cacheDir) {
-        List<URL> libs = manifest.files.stream().filter(LibraryFile::loadForCurrentPlatform).map(it -> it.toURL(cacheDir)).collect(Collectors.toList());
+        List<URL> libs = manifest.files.stream().filter(LibraryFile::loadForCurrentPlatform).filter(LibraryFile::isCore).map(it -> it.toURL(cacheDir)).collect(Collectors.toList());
 
         ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
         if (systemClassLoader instanceof FxlauncherClassCloader) {
@@ -105,75 +125,456 @@ public abstract class AbstractLauncher<APP> {
         if (getParameters().getUnnamed().contains("--offline")) {
             return false; // to signal that nothing has changed.
         }
-        List<LibraryFile> needsUpdate = manifest.files.stream()
+        return syncFiles(manifest, cacheDir, cacheDir, this::updateProgress);
+    }
+
+    /**
+     * Download the files of the source manifest that are outdated in the cache dir to the target dir. Files
+     * that are already current in the target dir are kept, so an interrupted sync resumes where it stopped.
+     *
+     * @return true if files were downloaded
+     */
+    private boolean syncFiles(FXManifest source, Path cacheDir, Path targetDir, DoubleConsumer progressSink) throws Exception {
+        // Files in directories that are unchanged since they were verified only need their size checked
+        Set<String> unchanged = DirectoryHash.unchangedSince(source, DirectoryHash.loadVerified(cacheDir));
+        List<LibraryFile> needsUpdate = source.files.stream()
                 .filter(LibraryFile::loadForCurrentPlatform)
-                .filter(it -> it.needsUpdate(cacheDir))
+                .filter(LibraryFile::isCore)
+                .filter(it -> (unchanged.contains(DirectoryHash.parent(it.file)) ? it.sizeDiffers(cacheDir) : it.needsUpdate(cacheDir))
+                        && (targetDir.equals(cacheDir) || it.needsUpdate(targetDir)))
                 .collect(Collectors.toList());
+        if (!unchanged.isEmpty())
+            log.info(String.format("%d of %d directories unchanged since they were verified", unchanged.size(), source.directories.size()));
+
+        // Downloaded files are verified by the next sync before their directories are trusted
+        if (targetDir.equals(cacheDir))
+            DirectoryHash.saveVerified(cacheDir, source, needsUpdate);
 
         if (needsUpdate.isEmpty())
             return false;
 
-        long totalBytes = needsUpdate.stream().mapToLong(f -> f.size).sum();
-        long totalWritten = 0L;
+        downloadFiles(source, needsUpdate, cacheDir, targetDir, progressSink);
+        return true;
+    }
+
+    /**
+     * Download the files from bundles or one by one, failing over between the mirrors of the source manifest.
+     */
+    private void downloadFiles(FXManifest source, List<LibraryFile> needsUpdate, Path cacheDir, Path targetDir, DoubleConsumer progressSink) throws Exception {
+        Mirrors mirrors = getMirrors(source, cacheDir);
+        Downloader downloader = getDownloader();
+        List<Bundle> bundles = selectBundles(source, needsUpdate);
+
+        // Bytes of the selected bundles plus the files they don't cover
+        Set<String> bundled = new HashSet<>();
+        for (Bundle bundle : bundles)
+            needsUpdate.stream().filter(lib -> bundle.isComplete() || bundle.file.equals(lib.bundle)).forEach(lib -> bundled.add(lib.file));
+        SyncProgress progress = new SyncProgress(progressSink);
+        progress.total = bundles.stream().mapToLong(b -> b.size).sum()
+                + needsUpdate.stream().filter(lib -> !bundled.contains(lib.file)).mapToLong(lib -> lib.size).sum();
+
+        try {
+            List<LibraryFile> remaining = new ArrayList<>(needsUpdate);
+            for (Bundle bundle : bundles)
+                remaining.removeAll(extractBundle(downloader, mirrors, bundle, remaining, targetDir, progress));
+
+            for (int i = 0; i < remaining.size(); i++) {
+                LibraryFile lib = remaining.get(i);
+                // Files missing from or corrupt in a bundle weren't part of the total yet
+                if (bundled.contains(lib.file)) progress.total += lib.size;
+                Path target = targetDir.resolve(lib.file).toAbsolutePath();
+                Files.createDirectories(target.getParent());
+
+                List<URI> candidates = mirrors.forFile(i);
+                int busy = 0;
+                for (int attempt = 0; ; attempt++) {
+                    URI mirror = candidates.get(attempt % candidates.size());
+                    URI hedge = candidates.get((attempt + 1) % candidates.size());
+                    try {
+                        if (Objects.equals(mirror.getScheme(), "file"))
+                            progress.done += copyLocal(downloader, lib, Connections.resolve(mirror, lib.remotePath()), targetDir, progress);
+                        else
+                            progress.done += download(downloader, Connections.resolve(mirror, lib.remotePath()), Connections.resolve(hedge, lib.remotePath()),
+                                    lib.isImmutable(), target, progress);
+                        mirrors.recordSuccess(mirror);
+                        break;
+                    } catch (IOException ex) {
+                        mirrors.recordFailure(mirror);
+                        if (attempt + 1 >= candidates.size() * MAX_ATTEMPTS_PER_MIRROR) throw ex;
+                        // Don't keep hammering a server that said it is overloaded, unless another mirror may help
+                        if (ex instanceof Downloader.ServerBusyException && ++busy >= candidates.size()) {
+                            long retryAt = ((Downloader.ServerBusyException) ex).retryAt;
+                            if (retryAt > 0) Rollout.retryAt(cacheDir, retryAt);
+                            throw ex;
+                        }
+                        log.warning(String.format("Download of %s from %s failed (%s), retrying", lib.file, mirror, ex.getMessage()));
+                        metrics.retry();
+                        if (!(ex instanceof Downloader.ServerBusyException)) Mirrors.backoff(attempt);
+                    }
+                }
+            }
+        } finally {
+            mirrors.save();
+            downloader.logMetrics();
+        }
+    }
 
-        for (LibraryFile lib : needsUpdate) {
-            Path target = cacheDir.resolve(lib.file).toAbsolutePath();
-            Files.createDirectories(target.getParent());
+    /**
+     * Download the files of an optional component that are missing or outdated in the cache dir, and verify them.
+     */
+    void syncComponent(FXManifest source, List<LibraryFile> files, Path cacheDir, DoubleConsumer progress) throws Exception {
+        List<LibraryFile> needsUpdate = files.stream().filter(lib -> lib.needsUpdate(cacheDir)).collect(Collectors.toList());
+        if (needsUpdate.isEmpty()) return;
+
+        downloadFiles(source, needsUpdate, cacheDir, cacheDir, progress);
+        for (LibraryFile lib : needsUpdate)
+            if (lib.needsUpdate(cacheDir))
+                throw new IOException(String.format("%s does not match the size and checksum in the manifest", lib.file));
+    }
 
-            URI uri;
+    /**
+     * Download a single file, reporting progress relative to the whole sync.
+     *
+     * @return the number of bytes written
+     */
+    private long download(Downloader downloader, URI uri, URI hedge, boolean immutable, Path target, SyncProgress progress) throws IOException {
+        Path part = part(target);
+        try {
+            long written;
+            try (InputStream input = downloader.openHedged(uri, hedge, immutable); OutputStream output = Files.newOutputStream(part)) {
+                written = downloader.copy(input, output, progress::report);
+            }
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+            return written;
+        } catch (IOException ex) {
+            Files.deleteIfExists(part);
+            throw ex;
+        }
+    }
 
-            // We avoid using uri.resolve() here so as to not break UNC paths. See issue #143
-            String separator = manifest.uri.getPath().endsWith("/") ? "" : "/";
-            uri = URI.create(manifest.uri.toString() + separator + lib.file);
+    /**
+     * Files are written next to their target and moved over it when complete, so a failed download keeps the
+     * cached copy. The move also replaces a hard link to an object of the repository instead of writing into it.
+     */
+    private static Path part(Path target) {
+        return target.resolveSibling(target.getFileName() + ".part");
+    }
 
+    /**
+     * Copy a file from a <code>file:</code> repository, like a network share, without a heap buffer. Content
+     * addressed objects never change, so on the same file system they are hard linked instead of copied. The
+     * copy is verified right away, so a corrupt file on the share fails over like a failed download.
+     */
+    private long copyLocal(Downloader downloader, LibraryFile lib, URI uri, Path targetDir, SyncProgress progress) throws IOException {
+        Path source = Paths.get(uri.getPath());
+        Path target = targetDir.resolve(lib.file);
+        Path part = part(target);
+        try {
+            long copied;
+            if (lib.isImmutable() && link(source, part)) {
+                copied = lib.size;
+                progress.report(copied);
+            } else {
+                copied = downloader.copyFile(source, part, progress::report);
+            }
+            if (Files.size(part) != lib.size || !lib.checksum.equals(lib.algorithm().checksum(part)))
+                throw new IOException(String.format("%s does not match the size and checksum in the manifest", uri));
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+            return copied;
+        } catch (IOException ex) {
+            Files.deleteIfExists(part);
+            throw ex;
+        }
+    }
 
-            try (InputStream input = openDownloadStream(uri); OutputStream output = Files.newOutputStream(target)) {
+    private static boolean link(Path source, Path target) {
+        try {
+            if (!Files.getFileStore(source).equals(Files.getFileStore(target.getParent()))) return false;
+            Files.deleteIfExists(target);
+            Files.createLink(target, source);
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            log.log(Level.FINE, String.format("Unable to link %s, copying it", source), e);
+            return false;
+        }
+    }
 
-                byte[] buf = new byte[65536];
+    /**
+     * The bundles worth downloading instead of single files. The complete bundle is used when most of its
+     * content is needed, typically on first install. Otherwise a chunk is used when at least half of it is
+     * needed and that saves requests. Small incremental updates are fetched file by file.
+     * <code>--bundles=false</code> always fetches single files.
+     */
+    private List<Bundle> selectBundles(FXManifest source, List<LibraryFile> needsUpdate) {
+        List<Bundle> selected = new ArrayList<>();
+        if (source.bundles == null || source.bundles.isEmpty()) return selected;
+        if (!Boolean.parseBoolean(new LauncherParams(getParameters(), source).getNamed().getOrDefault("bundles", "true")))
+            return selected;
+
+        long neededBytes = needsUpdate.stream().mapToLong(lib -> lib.size).sum();
+        for (Bundle bundle : source.bundles) {
+            if (bundle.isComplete() && bundle.size != null && neededBytes >= bundle.size * COMPLETE_BUNDLE_RATIO) {
+                selected.add(bundle);
+                return selected;
+            }
+        }
+        for (Bundle bundle : source.bundles) {
+            if (bundle.isComplete() || bundle.size == null) continue;
+            List<LibraryFile> needed = needsUpdate.stream().filter(lib -> bundle.file.equals(lib.bundle)).collect(Collectors.toList());
+            if (needed.size() >= 2 && needed.stream().mapToLong(lib -> lib.size).sum() >= bundle.size * CHUNK_RATIO)
+                selected.add(bundle);
+        }
+        return selected;
+    }
 
-                int read;
-                while ((read = input.read(buf)) > -1) {
-                    output.write(buf, 0, read);
-                    totalWritten += read;
-                    double progress = (double) totalWritten / (double) totalBytes;
-                    updateProgress(progress);
+    /**
+     * Stream a bundle from the first mirror that answers and extract the wanted files as they arrive. Each
+     * file is verified against its checksum before it replaces the cached copy. A failure midway keeps what was
+     * extracted so far, the rest is left to single file downloads.
+     *
+     * @return the files that were extracted and verified
+     */
+    private List<LibraryFile> extractBundle(Downloader downloader, Mirrors mirrors, Bundle bundle, List<LibraryFile> wanted, Path cacheDir, SyncProgress progress) {
+        Map<String, LibraryFile> byName = new HashMap<>();
+        for (LibraryFile lib : wanted) byName.put(lib.file, lib);
+        List<LibraryFile> extracted = new ArrayList<>();
+
+        List<URI> candidates = mirrors.ordered();
+        for (int attempt = 0; attempt < candidates.size() && extracted.size() < byName.size(); attempt++) {
+            URI mirror = candidates.get(attempt);
+            URI hedge = candidates.get((attempt + 1) % candidates.size());
+            long done = progress.done;
+            try (InputStream input = downloader.openHedged(Connections.resolve(mirror, bundle.file), Connections.resolve(hedge, bundle.file), false);
+                 ZipInputStream zip = new ZipInputStream(downloader.monitor(input, read -> progress.report(Math.min(read, bundle.size))))) {
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    LibraryFile lib = byName.get(entry.getName());
+                    if (lib == null || extracted.contains(lib)) continue;
+                    if (extractEntry(zip, lib, cacheDir)) extracted.add(lib);
+                    else log.warning(String.format("Checksum mismatch for %s in %s, downloading it separately", lib.file, bundle.file));
                 }
+                mirrors.recordSuccess(mirror);
+                break;
+            } catch (IOException ex) {
+                mirrors.recordFailure(mirror);
+                metrics.retry();
+                log.warning(String.format("Download of %s from %s failed (%s)", bundle.file, mirror, ex.getMessage()));
+            } finally {
+                progress.done = done;
+            }
+        }
+        progress.done += bundle.size;
+        log.info(String.format("Extracted %d of %d files from %s", extracted.size(), byName.size(), bundle.file));
+        return extracted;
+    }
+
+    private boolean extractEntry(ZipInputStream zip, LibraryFile lib, Path cacheDir) throws IOException {
+        Path target = cacheDir.resolve(lib.file).toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path part = part(target);
+
+        ChecksumAlgorithm.Digest digest = lib.algorithm().newDigest();
+        try (OutputStream output = Files.newOutputStream(part)) {
+            byte[] buf = new byte[65536];
+            int read;
+            while ((read = zip.read(buf)) > -1) {
+                output.write(buf, 0, read);
+                digest.update(buf, 0, read);
             }
+        } catch (IOException ex) {
+            Files.deleteIfExists(part);
+            throw ex;
+        }
+        if (!lib.checksum.equals(digest.value())) {
+            Files.delete(part);
+            return false;
         }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
         return true;
     }
 
-    private InputStream openDownloadStream(URI uri) throws IOException {
-        if ("file".equals(uri.getScheme())) {
-            return Files.newInputStream(new File(uri.getPath()).toPath());
+    /**
+     * Progress of one sync in bytes, reported to the UI and to launchers waiting on the cache lock.
+     */
+    private class SyncProgress {
+        private final DoubleConsumer sink;
+        long total;
+        long done;
+
+        SyncProgress(DoubleConsumer sink) {
+            this.sink = sink;
+        }
+
+        void report(long current) {
+            double value = total > 0 ? Math.min(1, (double) (done + current) / (double) total) : 1;
+            sink.accept(value);
+            if (cacheLock != null) cacheLock.publish(value);
+        }
+    }
+
+    /**
+     * The downloader is configured from the command line merged with the manifest parameters, so the
+     * timeouts can be tuned from the server.
+     */
+    protected synchronized Downloader getDownloader() {
+        if (downloader == null) {
+            Map<String, String> named = manifest != null
+                    ? new LauncherParams(getParameters(), manifest).getNamed()
+                    : getParameters().getNamed();
+            downloader = new Downloader(named, metrics);
+        }
+        return downloader;
+    }
+
+    public SyncMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The mirrors for the current manifest. They are probed once per launch, and again only if a newer
+     * manifest changes the mirror list. The update service and optional components ask for them on their own
+     * threads.
+     */
+    protected Mirrors getMirrors(Path cacheDir) {
+        return getMirrors(manifest, cacheDir);
+    }
+
+    private synchronized Mirrors getMirrors(FXManifest source, Path cacheDir) {
+        List<URI> candidates = source.getMirrorURIs();
+        if (mirrors == null || !mirrors.getCandidates().equals(candidates)) {
+            // Probed while the toolkit started, unless the mirror list has changed since
+            mirrors = Prewarm.probedMirrors(candidates);
+            if (mirrors == null) {
+                mirrors = new Mirrors(candidates, cacheDir);
+                mirrors.probe();
+            }
         }
+        return mirrors;
+    }
 
-        URLConnection connection = uri.toURL().openConnection();
-        if (uri.getUserInfo() != null) {
-            byte[] payload = uri.getUserInfo().getBytes(StandardCharsets.UTF_8);
-            String encoded = Base64.getEncoder().encodeToString(payload);
-            connection.setRequestProperty("Authorization", String.format("Basic %s", encoded));
+    /**
+     * Sync and prepare the application as a dependency graph instead of strictly in sequence. Native libraries
+     * that are not part of the update are loaded while the files download, which is the only work that overlaps
+     * the sync. The class loader is created once the sync is complete: it opens its jars on the first lookup and
+     * skips a jar for good if it can't be opened then, so it can't be created while jars are still downloading,
+     * and jars opened before would not be reused by it. Update errors go to {@link #onSyncError(Exception)},
+     * after which the application is prepared from the cache. The duration of every stage is logged.
+     *
+     * @return true if files were updated
+     */
+    protected boolean syncAndPrepare() throws Exception {
+        LaunchPipeline pipeline = new LaunchPipeline();
+        try {
+            CompletableFuture<Boolean> manifestSynced = pipeline.stage("manifest", () -> {
+                boolean updated = updateManifest();
+                onManifestLoaded();
+                if (updated) onManifestUpdated();
+                return updated;
+            });
+            CompletableFuture<Boolean> filesSynced = manifestSynced.thenCompose(updated -> pipeline.stage("files", this::syncFiles));
+            CompletableFuture<Boolean> synced = filesSynced.handle((updated, error) -> {
+                unlockCacheDir();
+                if (error != null) {
+                    try {
+                        onSyncError(LaunchPipeline.unwrap(error));
+                    } catch (Exception ex) {
+                        throw new CompletionException(ex);
+                    }
+                }
+                // After a failed sync the application starts from the cache, which must not be synced under it either
+                registerInstance();
+                if (error != null) return false;
+                cleanCache();
+                return updated;
+            });
+            // The embedded or cached manifest is used to launch if the remote one could not be loaded
+            CompletableFuture<Void> nativesLoaded = manifestSynced.handle((updated, error) -> null)
+                    .thenCompose(ignored -> pipeline.stage("natives", () -> {
+                        preloadNativeLibraries(synced);
+                        return null;
+                    }));
+            CompletableFuture<Void> prepared = synced.thenCombine(nativesLoaded, (updated, ignored) -> updated)
+                    .thenCompose(updated -> pipeline.stage("classloader", () -> {
+                        createApplicationEnvironment();
+                        return null;
+                    }));
+
+            LaunchPipeline.await(prepared);
+            // The class loader was created on a pipeline thread, the application is started from this one
+            if (appClassLoader != null) Thread.currentThread().setContextClassLoader(appClassLoader);
+            return LaunchPipeline.await(synced);
+        } finally {
+            pipeline.finish();
+        }
+    }
+
+    /**
+     * Called from {@link #syncAndPrepare()} once the manifest to launch from is known, before its files are synced.
+     */
+    protected void onManifestLoaded() {
+    }
+
+    /**
+     * Called from {@link #syncAndPrepare()} when a newer manifest was loaded, before its files are synced.
+     */
+    protected void onManifestUpdated() {
+    }
+
+    /**
+     * Called from {@link #syncAndPrepare()} when the manifest or files could not be synced. Throw to abort the launch.
+     */
+    protected void onSyncError(Exception error) throws Exception {
+        log.log(Level.WARNING, String.format("Error during %s phase", getPhase()), error);
+    }
+
+    /**
+     * Load the native libraries listed in the manifest. Libraries whose file is being updated are loaded once
+     * the sync is complete, the others right away.
+     */
+    protected void preloadNativeLibraries(CompletableFuture<?> synced) {
+        if (manifest == null || nativesLoaded) return;
+        Path cacheDir = manifest.resolveCacheDir(getParameters() != null ? getParameters().getNamed() : null);
+
+        List<String> deferred = new ArrayList<>();
+        for (String preloadLib : manifest.getPreloadNativeLibraryList()) {
+            String filename = System.mapLibraryName(preloadLib);
+            boolean updating = manifest.files.stream()
+                    .filter(lib -> lib.loadForCurrentPlatform() && Paths.get(lib.file).getFileName().toString().equals(filename))
+                    .anyMatch(lib -> lib.needsUpdate(cacheDir));
+            if (updating) deferred.add(preloadLib);
+            else loadLibrary(preloadLib);
+        }
+        if (!deferred.isEmpty()) {
+            synced.handle((updated, error) -> null).join();
+            deferred.forEach(this::loadLibrary);
+        }
+        nativesLoaded = true;
+    }
+
+    private void loadLibrary(String preloadLib) {
+        try {
+            System.loadLibrary(preloadLib);
+        } catch (Exception e) {
+            log.warning(String.format("lib加载失败：%s  原因:%s", preloadLib, e.getMessage()));
         }
-        return connection.getInputStream();
     }
 
     protected void createApplicationEnvironment() throws Exception {
-        Platform.runLater(() -> phase.set("应用初始化中..."));
+        setPhase("应用初始化中...");
 
         if (manifest == null)
             throw new IllegalArgumentException("Unable to retrieve embedded or remote manifest.");
-        List<String> preloadLibs = manifest.getPreloadNativeLibraryList();
-        for (String preloadLib : preloadLibs) {
-            try {
-                System.loadLibrary(preloadLib);
-            } catch (Exception e) {
-                log.warning(String.format("lib加载失败：%s  原因:%s", preloadLib, e.getMessage()));
-            }
-        }
+        preloadNativeLibraries(CompletableFuture.completedFuture(null));
 
         Path cacheDir = manifest.resolveCacheDir(getParameters() != null ? getParameters().getNamed() : null);
 
+        // Without a launch class the application is started in a child process
+        if (manifest.launchClass == null) return;
+
         ClassLoader classLoader = createClassLoader(cacheDir);
+        appClassLoader = classLoader;
+        // Available to the application from Components.get()
+        new Components(this, manifest, cacheDir, classLoader);
         Class<APP> appclass = (Class<APP>) classLoader.loadClass(manifest.launchClass);
 
         createApplication(appclass);
@@ -202,14 +603,19 @@ public abstract class AbstractLauncher<APP> {
                     ? URI.create(appStr)
                     : URI.create(uriStr + "app.xml"); // We avoid using uri.resolve() here so as to not break UNC paths. See issue #143
             manifest = FXManifest.load(app);
-            // set supplied uri in manifest
+            // set supplied uri in manifest, and only sync from there
             manifest.uri = uri;
+            manifest.mirrors.clear();
+            lockCacheDir(manifest.resolveCacheDir(namedParams));
+            promoteStagedUpdate(manifest.resolveCacheDir(namedParams));
             return true;
         }
 
         if (appStr != null) {
             // --uri was not supplied, but --app was, so load manifest from that
             manifest = FXManifest.load(new File(appStr).toURI());
+            lockCacheDir(manifest.resolveCacheDir(namedParams));
+            promoteStagedUpdate(manifest.resolveCacheDir(namedParams));
             return true;
         }
 
@@ -219,7 +625,12 @@ public abstract class AbstractLauncher<APP> {
         Path cacheDir = manifest.resolveCacheDir(namedParams);
         Path manifestPath = manifest.getPath(cacheDir);
 
-        if (Files.exists(manifestPath)) {
+        // Wait for any other launcher syncing this cache dir before looking at the cached manifest
+        lockCacheDir(cacheDir);
+        promoteStagedUpdate(cacheDir);
+
+        boolean cached = Files.exists(manifestPath);
+        if (cached) {
             manifest = JAXB.unmarshal(manifestPath.toFile(), FXManifest.class);
         }
 
@@ -227,25 +638,256 @@ public abstract class AbstractLauncher<APP> {
             log.info("offline selected");
             return false;
         }
+        // The manifest declares how long the cached copy is fresh, skip the network until then
+        if (cached && !getParameters().getUnnamed().contains("--force-check") && withinCheckInterval(manifest, cacheDir)) {
+            log.info(String.format("Manifest was checked within the check interval of %s, starting from the cache", manifest.checkInterval));
+            return false;
+        }
+        manifestCheckFailure = null;
         try {
-            FXManifest remoteManifest = FXManifest.load(manifest.getFXAppURI());
+            FXManifest remoteManifest = loadRemoteManifest(getMirrors(cacheDir), cacheDir);
+            if (remoteManifest != null) checked(cacheDir);
 
             if (remoteManifest == null) {
                 log.info(String.format("No remote manifest at %s", manifest.getFXAppURI()));
             } else if (!remoteManifest.equals(manifest)) {
+                // First installs take any manifest, existing ones only a release they are part of the rollout of
+                if (cached && !Rollout.includes(remoteManifest, cacheDir)) {
+                    log.info(String.format("Version %s is rolled out to %d%% of installations, not this one yet",
+                            remoteManifest.version, remoteManifest.rolloutPercentage));
+                }
                 // Update to remote manifest if newer or we specifically accept downgrades
-                if (remoteManifest.isNewerThan(manifest) || manifest.acceptDowngrade) {
+                else if (remoteManifest.isNewerThan(manifest) || manifest.acceptDowngrade) {
                     manifest = remoteManifest;
                     JAXB.marshal(manifest, manifestPath.toFile());
                     return true;
                 }
             }
         } catch (Exception ex) {
+            manifestCheckFailure = ex;
             log.log(Level.WARNING, String.format("Unable to update manifest from %s", manifest.getFXAppURI()), ex);
         }
         return false;
     }
 
+    /**
+     * Why the last {@link #syncManifest()} couldn't ask the server for the manifest, or null if it could
+     */
+    Exception getManifestCheckFailure() {
+        return manifestCheckFailure;
+    }
+
+    /**
+     * Take the cross-process lock on the cache dir for the rest of the sync. While another launcher holds it,
+     * its progress is shown in the phase text.
+     */
+    protected void lockCacheDir(Path cacheDir) throws InterruptedException {
+        if (cacheLock == null)
+            cacheLock = CacheLock.acquire(cacheDir, progress -> setPhase(String.format("其他程序正在更新,请稍候... %d%%", (int) (progress * 100))));
+    }
+
+    /**
+     * Release the cache dir lock once the sync is complete, so waiting launchers can verify the result.
+     */
+    protected void unlockCacheDir() {
+        if (cacheLock != null) {
+            cacheLock.close();
+            cacheLock = null;
+        }
+    }
+
+    /**
+     * Register the files of the current manifest as in use by this process, so other launchers, the cache
+     * cleaner and Prefetch leave them alone. Call before the application starts, whether the sync succeeded
+     * or not.
+     */
+    protected void registerInstance() {
+        if (manifest == null) return;
+        Path cacheDir = manifest.resolveCacheDir(new LauncherParams(getParameters(), manifest).getNamed());
+
+        List<String> inUse = manifest.files.stream().map(lib -> lib.file).collect(Collectors.toList());
+        inUse.add(manifest.getFilename());
+        CacheCleaner.registerInstance(cacheDir, inUse);
+    }
+
+    /**
+     * Remove files no longer referenced from the cache dir in the background. Call after a successful sync.
+     */
+    protected void cleanCache() {
+        if (manifest == null) return;
+        Map<String, String> named = new LauncherParams(getParameters(), manifest).getNamed();
+        new CacheCleaner(manifest.resolveCacheDir(named), named).cleanInBackground(manifest);
+    }
+
+    /**
+     * Release what the launcher no longer needs once the application has started. The manifest is replaced by
+     * a summary without the file list, and the launcher's own threads are daemons that end when idle.
+     * With <code>--measure-handoff=true</code> the heap retained before and after is logged.
+     *
+     * @param releaseUI disposes the launcher UI
+     */
+    protected void releaseAfterHandoff(Runnable releaseUI) {
+        boolean measure = getParameters() != null && Boolean.parseBoolean(getParameters().getNamed().get("measure-handoff"));
+        long before = measure ? retainedHeap() : -1;
+
+        releaseUI.run();
+        if (manifest != null) manifest = manifest.summary();
+        appClassLoader = null;
+
+        if (measure) {
+            long after = retainedHeap();
+            log.info(String.format("Retained heap at handoff: %d KB before release, %d KB after, %d KB released",
+                    before / 1024, after / 1024, (before - after) / 1024));
+        }
+    }
+
+    /**
+     * True if the server was asked for the cached manifest less than its check interval ago
+     */
+    static boolean withinCheckInterval(FXManifest cached, Path cacheDir) {
+        long age = System.currentTimeMillis() - lastChecked(cacheDir);
+        return age >= 0 && age < cached.getCheckIntervalMillis();
+    }
+
+    /**
+     * The time the server was last asked for the manifest, or 0
+     */
+    private static long lastChecked(Path cacheDir) {
+        Path file = cacheDir.resolve(CHECKED_FILE);
+        try {
+            return Files.exists(file) ? Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void checked(Path cacheDir) {
+        try {
+            Files.write(cacheDir.resolve(CHECKED_FILE), String.valueOf(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to store the time of the manifest check", e);
+        }
+    }
+
+    private static long retainedHeap() {
+        // Only with --measure-handoff, collecting garbage is the only way to see what is actually retained
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * The update service the running application can use to download updates in the background.
+     */
+    public synchronized UpdateService getUpdateService() {
+        if (updateService == null) {
+            Path cacheDir = manifest.resolveCacheDir(getParameters() != null ? getParameters().getNamed() : null);
+            updateService = new UpdateService(this, cacheDir);
+        }
+        return updateService;
+    }
+
+    /**
+     * Load the remote manifest, and if it is an update for the running application, download the files that
+     * differ from the cache dir to the staging dir. The staged manifest is written last, so only a complete
+     * update is promoted on the next start.
+     *
+     * @param staged a manifest staged before, its files are not verified again if the remote manifest is the same
+     * @return the staged manifest, or null if there is no update
+     */
+    FXManifest stageUpdate(Path cacheDir, FXManifest staged, DoubleConsumer progress) throws Exception {
+        FXManifest remoteManifest = loadRemoteManifest(getMirrors(cacheDir), cacheDir);
+        Path stagingDir = cacheDir.resolve(STAGING_DIR);
+        if (remoteManifest == null || Objects.equals(remoteManifest.ts, manifest.ts) || remoteManifest.equals(manifest)
+                || !remoteManifest.isNewerThan(manifest) && !manifest.acceptDowngrade || !Rollout.includes(remoteManifest, cacheDir)) {
+            // An update staged earlier may have been withdrawn or its rollout reduced
+            Files.deleteIfExists(stagingDir.resolve(STAGED_MANIFEST));
+            return null;
+        }
+        if (remoteManifest.equals(staged)) return staged;
+
+        Files.createDirectories(stagingDir);
+        Files.deleteIfExists(stagingDir.resolve(STAGED_MANIFEST));
+        syncFiles(remoteManifest, cacheDir, stagingDir, progress);
+        JAXB.marshal(remoteManifest, stagingDir.resolve(STAGED_MANIFEST).toFile());
+        log.info(String.format("Staged update to version %s in %s", remoteManifest.version, stagingDir));
+        return remoteManifest;
+    }
+
+    /**
+     * Move the files of an update staged by the {@link UpdateService} into the cache dir and make its manifest
+     * the cached one. Files that fail verification are left to the normal sync.
+     */
+    protected void promoteStagedUpdate(Path cacheDir) {
+        Path stagingDir = cacheDir.resolve(STAGING_DIR);
+        Path stagedManifest = stagingDir.resolve(STAGED_MANIFEST);
+        if (!Files.exists(stagedManifest)) return;
+        try {
+            FXManifest staged = JAXB.unmarshal(stagedManifest.toFile(), FXManifest.class);
+            int promoted = 0;
+            for (LibraryFile lib : staged.files) {
+                Path file = stagingDir.resolve(lib.file);
+                if (!Files.exists(file) || lib.needsUpdate(stagingDir)) continue;
+                Path target = cacheDir.resolve(lib.file);
+                Files.createDirectories(target.getParent());
+                Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                promoted++;
+            }
+            JAXB.marshal(staged, staged.getPath(cacheDir).toFile());
+            log.info(String.format("Applied staged update to version %s, %d files", staged.version, promoted));
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Unable to apply staged update", e);
+        } finally {
+            try (Stream<Path> files = Files.walk(stagingDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            } catch (IOException e) {
+                log.log(Level.FINE, "Unable to remove staging dir", e);
+            }
+        }
+    }
+
+    /**
+     * Load app.xml from the fastest mirror, failing over to the next one on error. If every mirror is busy,
+     * the server is left alone until the time it asked for.
+     */
+    private FXManifest loadRemoteManifest(Mirrors mirrors, Path cacheDir) throws Exception {
+        long retryAt = Rollout.retryAt(cacheDir);
+        if (retryAt > System.currentTimeMillis())
+            throw new Downloader.ServerBusyException(manifest.getFXAppURI(), 503, retryAt);
+
+        IOException failure = null;
+        List<URI> candidates = mirrors.ordered();
+        long busyUntil = Long.MAX_VALUE;
+        try {
+            for (int attempt = 0; attempt < candidates.size(); attempt++) {
+                URI mirror = candidates.get(attempt);
+                try (InputStream input = getDownloader().open(Connections.resolve(mirror, "app.xml"), false)) {
+                    FXManifest remoteManifest = JAXB.unmarshal(input, FXManifest.class);
+                    mirrors.recordSuccess(mirror);
+                    return remoteManifest;
+                } catch (IOException ex) {
+                    mirrors.recordFailure(mirror);
+                    if (failure == null) failure = ex;
+                    else failure.addSuppressed(ex);
+                    boolean busy = ex instanceof Downloader.ServerBusyException;
+                    busyUntil = busy ? Math.min(busyUntil, ((Downloader.ServerBusyException) ex).retryAt) : 0;
+                    if (attempt + 1 < candidates.size()) {
+                        log.warning(String.format("Unable to load manifest from %s (%s), trying next mirror", mirror, ex.getMessage()));
+                        // A busy server is no reason to wait before asking the next one
+                        if (!busy) Mirrors.backoff(attempt);
+                    }
+                }
+            }
+        } finally {
+            mirrors.save();
+        }
+        if (busyUntil > 0 && busyUntil != Long.MAX_VALUE) {
+            log.info(String.format("All servers are busy, starting from the cache and checking again after %tT", busyUntil));
+            Rollout.retryAt(cacheDir, busyUntil);
+        }
+        throw failure;
+    }
+
     protected void setupIgnoreSSLCertificate() throws NoSuchAlgorithmException, KeyManagementException {
         log.info("starting ssl setup");
         TrustManager[] trustManager = new TrustManager[]{
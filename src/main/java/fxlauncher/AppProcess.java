@@ -0,0 +1,151 @@
+package fxlauncher;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Starts an application without a launch class in a child JVM.
+ * <p>
+ * The child runs on the java binary of the current JRE with every file of the manifest on the classpath, the
+ * <code>jvmArgs</code> of the manifest for the current platform and the Main-Class of the first file. It gets the
+ * manifest parameters and command line arguments, except the ones for the launcher. Its output is appended to
+ * <code>logs/app.log</code> by the operating system, so it can never block on a full pipe. The launcher JVM waits
+ * for the child, so the files stay registered as in use while it runs.
+ */
+class AppProcess {
+    private static final Logger log = Logger.getLogger("AppProcess");
+
+    private static final Pattern RAM = Pattern.compile("\\$\\{ram:([0-9]*\\.?[0-9]+)}");
+
+    // Parameters read by the launcher, an application with strict argument parsing would reject them
+    private static final Set<String> LAUNCHER_PARAMS = new HashSet<>(Arrays.asList(
+            "uri", "app", "cache-dir", "logs", "bundles", "measure-handoff", "spinner-animation", "splash",
+            "single-instance", "connect-timeout", "read-timeout", "min-throughput", "stall-window", "hedge",
+            "use-caches", "max-bandwidth", "cache-gc", "cache-keep-versions", "cache-max-bytes"));
+    private static final Set<String> LAUNCHER_FLAGS = new HashSet<>(Arrays.asList(
+            "--offline", "--ignoressl", "--force-check"));
+
+    static Process start(FXManifest manifest, Path cacheDir, List<String> appArgs) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(javaBinary());
+        for (String arg : manifest.getJvmArgs()) {
+            String expanded = expand(arg, cacheDir);
+            if (expanded != null) command.add(expanded);
+        }
+
+        List<LibraryFile> files = manifest.files.stream().filter(LibraryFile::loadForCurrentPlatform).filter(LibraryFile::isCore).collect(Collectors.toList());
+        if (files.isEmpty()) throw new IllegalArgumentException("No files to start in the manifest");
+        Path first = cacheDir.resolve(files.get(0).file).toAbsolutePath();
+        String mainClass = mainClass(first);
+        if (mainClass != null) {
+            command.add("-cp");
+            command.add(files.stream().map(lib -> cacheDir.resolve(lib.file).toAbsolutePath().toString()).collect(Collectors.joining(File.pathSeparator)));
+            command.add(mainClass);
+        } else {
+            command.add("-jar");
+            command.add(first.toString());
+        }
+        command.addAll(appArgs);
+
+        Path logFile = Files.createDirectories(Paths.get("logs")).resolve("app.log");
+        log.info(String.format("Starting %s, output in %s", String.join(" ", command), logFile.toAbsolutePath()));
+        return new ProcessBuilder(command)
+                .directory(cacheDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(logFile.toFile()))
+                .redirectInput(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    /**
+     * Keep this JVM alive until the application exits, and exit with its status. The launcher has closed its
+     * window by then, and a thread that isn't a daemon outlives the JavaFX toolkit.
+     */
+    static void exitWith(Process process) {
+        Thread thread = new Thread(() -> {
+            try {
+                int status = process.waitFor();
+                log.info(String.format("Application exited with status %d", status));
+                System.exit(status);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "FXLauncher-AppProcess");
+        thread.setDaemon(false);
+        thread.start();
+    }
+
+    /**
+     * The arguments for the application, without the ones the launcher consumes
+     */
+    static List<String> appArgs(List<String> raw) {
+        return raw.stream().filter(arg -> !isLauncherArg(arg)).collect(Collectors.toList());
+    }
+
+    private static boolean isLauncherArg(String arg) {
+        if (LAUNCHER_FLAGS.contains(arg)) return true;
+        if (!arg.startsWith("--") || !arg.contains("=")) return false;
+        return LAUNCHER_PARAMS.contains(arg.substring(2, arg.indexOf('=')));
+    }
+
+    private static String javaBinary() {
+        Path bin = Paths.get(System.getProperty("java.home"), "bin");
+        return bin.resolve(OS.current == OS.win ? "java.exe" : "java").toString();
+    }
+
+    private static String mainClass(Path jar) {
+        try (JarFile file = new JarFile(jar.toFile())) {
+            Manifest manifest = file.getManifest();
+            return manifest != null ? manifest.getMainAttributes().getValue("Main-Class") : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replace the placeholders in an option.
+     *
+     * @return the option, or null if it can't be expanded on this machine
+     */
+    static String expand(String arg, Path cacheDir) {
+        arg = arg.replace("${cacheDir}", cacheDir.toAbsolutePath().toString());
+        Matcher ram = RAM.matcher(arg);
+        if (!ram.find()) return arg;
+
+        long physical = physicalMemory();
+        if (physical <= 0) {
+            log.warning(String.format("Unable to determine physical memory, leaving out %s", arg));
+            return null;
+        }
+        StringBuffer expanded = new StringBuffer();
+        do {
+            long megabytes = (long) (physical * Double.parseDouble(ram.group(1))) / (1024 * 1024);
+            ram.appendReplacement(expanded, megabytes + "m");
+        } while (ram.find());
+        ram.appendTail(expanded);
+        return expanded.toString();
+    }
+
+    private static long physicalMemory() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean)
+            return ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize();
+        return -1;
+    }
+}
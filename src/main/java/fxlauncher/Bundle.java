@@ -0,0 +1,138 @@
+package fxlauncher;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A zip archive holding several files of the manifest, so a first install or a large update can be
+ * downloaded with a few requests instead of one per file.
+ * <p>
+ * <code>CreateManifest --bundles=true</code> writes a complete bundle with every file, and chunks of at most
+ * <code>--bundle-chunk-size=</code> bytes (default 32 MB). Each {@link LibraryFile} names the chunk it is in.
+ */
+public class Bundle {
+    static final String DIR = "bundles";
+    static final long DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+    @XmlAttribute
+    String file;
+    @XmlAttribute
+    Long size;
+    /**
+     * True for the bundle containing every file of the manifest
+     */
+    @XmlAttribute
+    Boolean complete;
+
+    public Bundle() {
+    }
+
+    Bundle(String file, boolean complete) {
+        this.file = file;
+        this.complete = complete ? Boolean.TRUE : null;
+    }
+
+    boolean isComplete() {
+        return Boolean.TRUE.equals(complete);
+    }
+
+    /**
+     * Write the complete bundle and the chunks for the manifest files below appPath, and record them in the manifest.
+     */
+    static void create(FXManifest manifest, Path appPath, long chunkSize) throws IOException {
+        Path dir = Files.createDirectories(appPath.resolve(DIR));
+        // Chunks of a previous run may not be overwritten when there are fewer now
+        try (DirectoryStream<Path> old = Files.newDirectoryStream(dir, "*.zip")) {
+            for (Path bundle : old) Files.delete(bundle);
+        }
+        manifest.bundles.clear();
+
+        // Optional components are downloaded on their own when they are needed
+        List<LibraryFile> core = manifest.files.stream().filter(LibraryFile::isCore).collect(Collectors.toList());
+        Bundle all = new Bundle(DIR + "/all.zip", true);
+        all.write(appPath, core);
+        manifest.bundles.add(all);
+
+        List<LibraryFile> chunk = new ArrayList<>();
+        long chunkBytes = 0;
+        for (LibraryFile lib : core) {
+            if (!chunk.isEmpty() && chunkBytes + lib.size > chunkSize) {
+                addChunk(manifest, appPath, chunk);
+                chunk = new ArrayList<>();
+                chunkBytes = 0;
+            }
+            chunk.add(lib);
+            chunkBytes += lib.size;
+        }
+        if (!chunk.isEmpty()) addChunk(manifest, appPath, chunk);
+    }
+
+    private static void addChunk(FXManifest manifest, Path appPath, List<LibraryFile> files) throws IOException {
+        Bundle chunk = new Bundle(String.format("%s/chunk-%03d.zip", DIR, manifest.bundles.size()), false);
+        chunk.write(appPath, files);
+        for (LibraryFile lib : files) lib.bundle = chunk.file;
+        manifest.bundles.add(chunk);
+    }
+
+    private void write(Path appPath, List<LibraryFile> files) throws IOException {
+        Path target = appPath.resolve(file);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(target))) {
+            for (LibraryFile lib : files) {
+                Path source = appPath.resolve(lib.file);
+                ZipEntry entry = new ZipEntry(lib.file);
+                // Archives don't compress any further, store them to save the client the inflating
+                if (isCompressed(lib.file)) {
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(lib.size);
+                    entry.setCompressedSize(lib.size);
+                    entry.setCrc(crc(source));
+                }
+                zip.putNextEntry(entry);
+                Files.copy(source, zip);
+                zip.closeEntry();
+            }
+        }
+        size = Files.size(target);
+    }
+
+    private static boolean isCompressed(String file) {
+        String name = file.toLowerCase();
+        return name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".zip") || name.endsWith(".gz");
+    }
+
+    private static long crc(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[65536];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buf)) > -1) crc.update(buf, 0, read);
+        }
+        return crc.getValue();
+    }
+
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Bundle that = (Bundle) o;
+
+        if (!file.equals(that.file)) return false;
+        return size != null ? size.equals(that.size) : that.size == null;
+    }
+
+    public int hashCode() {
+        int result = file.hashCode();
+        result = 31 * result + (size != null ? size.hashCode() : 0);
+        return result;
+    }
+}
@@ -0,0 +1,262 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Removes files from the cache dir that the current manifest no longer references.
+ * <p>
+ * Only files the launcher has synced itself are considered. They are recorded with their last use in
+ * <code>.fxlauncher.files</code>, so nothing else that happens to live in the cache dir is ever touched.
+ * Unreferenced files are grouped by artifact name with the version stripped, and the most recently used
+ * <code>--cache-keep-versions=</code> (default 1) of each group are kept. <code>--cache-max-bytes=</code> caps
+ * the total size of the kept prior versions, evicting the least recently used first. Stale manifest copies are
+ * always removed. <code>--cache-gc=false</code> turns cleaning off.
+ * <p>
+ * Every running launcher registers the files it uses in <code>.fxlauncher.instances</code> and holds a lock on
+ * that registration for the lifetime of the JVM. Files of live instances are never removed, and the cleaner
+ * only runs when it can take the {@link CacheLock}, so it never races a sync.
+ */
+class CacheCleaner {
+    private static final Logger log = Logger.getLogger("CacheCleaner");
+
+    private static final String INDEX_FILE = ".fxlauncher.files";
+    private static final String INSTANCES_DIR = ".fxlauncher.instances";
+    private static final Pattern VERSION = Pattern.compile("-\\d[^/]*?(?=\\.[^.]+$)");
+    // Lock a byte far beyond the content, so the registration can still be read while it is locked
+    private static final long LOCK_POSITION = Long.MAX_VALUE - 1;
+
+    private static FileChannel registration;
+    private static Path registrationFile;
+
+    private final Path cacheDir;
+    private final boolean enabled;
+    private final int keepVersions;
+    private final long maxBytes;
+
+    CacheCleaner(Path cacheDir, Map<String, String> namedParams) {
+        this.cacheDir = cacheDir;
+        this.enabled = Boolean.parseBoolean(namedParams.getOrDefault("cache-gc", "true"));
+        this.keepVersions = Integer.parseInt(namedParams.getOrDefault("cache-keep-versions", "1"));
+        this.maxBytes = Long.parseLong(namedParams.getOrDefault("cache-max-bytes", "0"));
+    }
+
+    /**
+     * Record the files this JVM uses, so cleaners in other processes leave them alone while it runs.
+     */
+    static synchronized void registerInstance(Path cacheDir, Collection<String> files) {
+        try {
+            if (registration != null) unregisterInstance();
+            else Runtime.getRuntime().addShutdownHook(new Thread(CacheCleaner::unregisterInstance, "FXLauncher-Unregister"));
+            Path dir = Files.createDirectories(cacheDir.resolve(INSTANCES_DIR));
+            registrationFile = dir.resolve(UUID.randomUUID().toString());
+            // Not DELETE_ON_CLOSE, which unlinks the file right away on Linux, so other processes would never see it.
+            // Registrations left behind by a crash are no longer locked, and the cleaner removes them.
+            registration = FileChannel.open(registrationFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            registration.lock(LOCK_POSITION, 1, false);
+            registration.write(ByteBuffer.wrap(String.join("\n", files).getBytes(StandardCharsets.UTF_8)));
+            registration.force(false);
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to register instance", e);
+        }
+    }
+
+    private static synchronized void unregisterInstance() {
+        if (registration == null) return;
+        try {
+            registration.close();
+            Files.deleteIfExists(registrationFile);
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to remove instance registration", e);
+        }
+        registration = null;
+        registrationFile = null;
+    }
+
+    /**
+     * Clean in a background thread, unless another launcher is syncing right now.
+     */
+    void cleanInBackground(FXManifest manifest) {
+        if (!enabled) return;
+        Thread thread = new Thread(() -> {
+            try (CacheLock lock = CacheLock.tryAcquire(cacheDir)) {
+                if (lock != null) clean(manifest);
+            } catch (Exception e) {
+                log.log(Level.WARNING, "Cache cleanup failed", e);
+            }
+        }, "FXLauncher-CacheCleaner");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    void clean(FXManifest manifest) throws IOException {
+        Properties index = loadIndex();
+
+        Set<String> current = manifest.files.stream().map(lib -> lib.file).collect(Collectors.toSet());
+        current.add(manifest.getFilename());
+
+        long now = System.currentTimeMillis();
+        for (String file : current)
+            if (Files.exists(cacheDir.resolve(file))) index.setProperty(file, Long.toString(now));
+
+        Set<String> inUse = filesInUse();
+
+        // Unreferenced files grouped by artifact, most recently used first
+        Map<String, List<String>> groups = new HashMap<>();
+        for (String file : index.stringPropertyNames()) {
+            if (current.contains(file) || inUse.contains(file)) continue;
+            if (!Files.exists(cacheDir.resolve(file))) {
+                index.remove(file);
+                continue;
+            }
+            groups.computeIfAbsent(artifact(file), k -> new ArrayList<>()).add(file);
+        }
+
+        Comparator<String> recentFirst = Comparator.comparing((String file) -> Long.parseLong(index.getProperty(file))).reversed();
+        List<String> kept = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (List<String> group : groups.values()) {
+            group.sort(recentFirst);
+            for (int i = 0; i < group.size(); i++) {
+                String file = group.get(i);
+                if (i < keepVersions && !file.endsWith(".xml")) kept.add(file);
+                else removed.add(file);
+            }
+        }
+
+        if (maxBytes > 0) {
+            kept.sort(recentFirst);
+            long bytes = 0;
+            for (Iterator<String> it = kept.iterator(); it.hasNext(); ) {
+                String file = it.next();
+                bytes += Files.size(cacheDir.resolve(file));
+                if (bytes > maxBytes) {
+                    removed.add(file);
+                    it.remove();
+                }
+            }
+        }
+
+        long freed = 0;
+        for (String file : removed) {
+            Path path = cacheDir.resolve(file);
+            try {
+                long size = Files.size(path);
+                Files.delete(path);
+                deleteEmptyParents(path.getParent());
+                index.remove(file);
+                freed += size;
+            } catch (IOException e) {
+                // Most likely open in a process that didn't register, try again next time
+                log.log(Level.FINE, String.format("Unable to delete %s", path), e);
+            }
+        }
+        if (!removed.isEmpty())
+            log.info(String.format("Removed %d unreferenced files (%d bytes) from %s, kept %d prior versions", removed.size(), freed, cacheDir, kept.size()));
+
+        storeIndex(index);
+    }
+
+    /**
+     * The files registered by other live instances. Registrations that are no longer locked belong to
+     * launchers that have exited and are removed.
+     */
+    private Set<String> filesInUse() throws IOException {
+        Set<String> files = new HashSet<>();
+        Path dir = cacheDir.resolve(INSTANCES_DIR);
+        if (!Files.isDirectory(dir)) return files;
+
+        try (DirectoryStream<Path> instances = Files.newDirectoryStream(dir)) {
+            for (Path instance : instances) {
+                // Opening our own registration again could release its lock when closed
+                synchronized (CacheCleaner.class) {
+                    if (instance.equals(registrationFile)) continue;
+                }
+                boolean alive;
+                try {
+                    alive = isLocked(instance);
+                } catch (NoSuchFileException ignored) {
+                    continue;
+                }
+                if (alive)
+                    files.addAll(Files.readAllLines(instance, StandardCharsets.UTF_8));
+                else
+                    Files.deleteIfExists(instance);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * True if a launcher other than this one has started the application from the cache dir and is still running
+     */
+    static boolean hasLiveInstances(Path cacheDir) throws IOException {
+        Path dir = cacheDir.resolve(INSTANCES_DIR);
+        if (!Files.isDirectory(dir)) return false;
+
+        try (DirectoryStream<Path> instances = Files.newDirectoryStream(dir)) {
+            for (Path instance : instances) {
+                synchronized (CacheCleaner.class) {
+                    if (instance.equals(registrationFile)) continue;
+                }
+                try {
+                    if (isLocked(instance)) return true;
+                } catch (NoSuchFileException ignored) {
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLocked(Path instance) throws IOException {
+        try (FileChannel channel = FileChannel.open(instance, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock(LOCK_POSITION, 1, false);
+            if (lock == null) return true;
+            lock.release();
+            return false;
+        }
+    }
+
+    private static String artifact(String file) {
+        return VERSION.matcher(file).replaceFirst("");
+    }
+
+    private void deleteEmptyParents(Path dir) {
+        while (dir != null && !dir.equals(cacheDir) && dir.startsWith(cacheDir)) {
+            try {
+                Files.delete(dir);
+            } catch (IOException notEmpty) {
+                return;
+            }
+            dir = dir.getParent();
+        }
+    }
+
+    private Properties loadIndex() throws IOException {
+        Properties index = new Properties();
+        Path file = cacheDir.resolve(INDEX_FILE);
+        if (Files.exists(file))
+            try (InputStream input = Files.newInputStream(file)) {
+                index.load(input);
+            }
+        return index;
+    }
+
+    private void storeIndex(Properties index) throws IOException {
+        try (OutputStream output = Files.newOutputStream(cacheDir.resolve(INDEX_FILE))) {
+            index.store(output, "Files synced by FXLauncher and when they were last used");
+        }
+    }
+}
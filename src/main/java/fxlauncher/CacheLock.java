@@ -0,0 +1,188 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exclusive lock on a cache dir, so that launchers started at the same time from a shared cache dir sync
+ * one after the other instead of downloading the same files concurrently.
+ * <p>
+ * The first process becomes the sync leader and publishes its progress to a status file. The others poll the
+ * lock and report the leader's progress until it is released, and then verify the result themselves, which
+ * normally means no downloads at all. The operating system releases the lock if the leader dies.
+ * <p>
+ * File locks are held by the whole JVM, and closing any channel of the lock file may release them. Every cache
+ * dir therefore has one channel per JVM that is never closed, and threads of the same JVM, like the launcher,
+ * the update service and the cache cleaner, take turns through a semaphore before they touch the file lock.
+ */
+class CacheLock implements AutoCloseable {
+    private static final Logger log = Logger.getLogger("CacheLock");
+
+    private static final String LOCK_FILE = ".fxlauncher.lock";
+    private static final String STATUS_FILE = ".fxlauncher.status";
+    private static final long POLL_MILLIS = 200;
+    private static final long PUBLISH_MILLIS = 100;
+
+    private static final Map<Path, Shared> shared = new ConcurrentHashMap<>();
+
+    /**
+     * The state of a cache dir lock that is shared by all threads of the JVM
+     */
+    private static class Shared {
+        // Not bound to a thread, the launcher releases the lock on another thread than it acquired it
+        final Semaphore permit = new Semaphore(1, true);
+        // Only used by the thread holding the permit
+        FileChannel channel;
+
+        FileChannel channel(Path lockFile) throws IOException {
+            if (channel == null || !channel.isOpen())
+                channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            return channel;
+        }
+    }
+
+    private final Shared owner;
+    private final FileLock lock;
+    private final Path statusFile;
+    private long lastPublish;
+    private boolean closed;
+
+    private CacheLock(Shared owner, FileLock lock, Path statusFile) {
+        this.owner = owner;
+        this.lock = lock;
+        this.statusFile = statusFile;
+    }
+
+    private static Shared shared(Path cacheDir) {
+        return shared.computeIfAbsent(cacheDir.toAbsolutePath().normalize(), dir -> new Shared());
+    }
+
+    /**
+     * Acquire the lock, waiting for another process to finish its sync if necessary.
+     *
+     * @param leaderProgress receives the progress of the process holding the lock while waiting
+     * @return the lock, or null if the cache dir can't be locked (read only or unsupported file system)
+     */
+    static CacheLock acquire(Path cacheDir, DoubleConsumer leaderProgress) throws InterruptedException {
+        Path statusFile = cacheDir.resolve(STATUS_FILE);
+        Shared owner = shared(cacheDir);
+        boolean waited = false;
+        while (!owner.permit.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!waited) {
+                log.info(String.format("%s is being synced in this process, waiting for it to finish", cacheDir));
+                waited = true;
+            }
+            double progress = readProgress(statusFile);
+            if (progress >= 0) leaderProgress.accept(progress);
+        }
+
+        try {
+            FileChannel channel = owner.channel(cacheDir.resolve(LOCK_FILE));
+            while (true) {
+                FileLock lock = channel.tryLock();
+                if (lock != null) {
+                    if (waited) log.info("Sync leader finished, verifying cache");
+                    return new CacheLock(owner, lock, statusFile);
+                }
+                if (!waited) {
+                    log.info(String.format("Another launcher is syncing %s, waiting for it to finish", cacheDir));
+                    waited = true;
+                }
+                double progress = readProgress(statusFile);
+                if (progress >= 0) leaderProgress.accept(progress);
+                Thread.sleep(POLL_MILLIS);
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            log.log(Level.WARNING, String.format("Unable to lock %s, syncing without coordination", cacheDir), e);
+            owner.permit.release();
+            return null;
+        } catch (InterruptedException e) {
+            owner.permit.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Acquire the lock only if no other process holds it.
+     *
+     * @return the lock, or null if it is held elsewhere or the cache dir can't be locked
+     */
+    static CacheLock tryAcquire(Path cacheDir) {
+        Shared owner = shared(cacheDir);
+        if (!owner.permit.tryAcquire()) return null;
+        try {
+            FileLock lock = owner.channel(cacheDir.resolve(LOCK_FILE)).tryLock();
+            if (lock != null) return new CacheLock(owner, lock, cacheDir.resolve(STATUS_FILE));
+        } catch (IOException | OverlappingFileLockException e) {
+            log.log(Level.FINE, String.format("Unable to lock %s", cacheDir), e);
+        }
+        owner.permit.release();
+        return null;
+    }
+
+    /**
+     * Publish the sync progress for launchers waiting on this lock. Writes are throttled.
+     */
+    void publish(double progress) {
+        long now = System.currentTimeMillis();
+        if (now - lastPublish < PUBLISH_MILLIS && progress < 1) return;
+        lastPublish = now;
+
+        Properties status = new Properties();
+        status.setProperty("progress", Double.toString(progress));
+        try {
+            Path temp = statusFile.resolveSibling(STATUS_FILE + ".tmp");
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                status.store(output, null);
+            }
+            Files.move(temp, statusFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to publish sync status", e);
+        }
+    }
+
+    private static double readProgress(Path statusFile) {
+        if (!Files.exists(statusFile)) return -1;
+        Properties status = new Properties();
+        try (InputStream input = Files.newInputStream(statusFile)) {
+            status.load(input);
+            return Double.parseDouble(status.getProperty("progress", "-1"));
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            Files.deleteIfExists(statusFile);
+        } catch (IOException ignored) {
+        }
+        try {
+            lock.release();
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to release cache lock", e);
+        } finally {
+            // The channel stays open, closing it could release locks of this JVM on the same file
+            owner.permit.release();
+        }
+    }
+}
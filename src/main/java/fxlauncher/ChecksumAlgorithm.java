@@ -0,0 +1,106 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Adler32;
+import java.util.zip.Checksum;
+
+/**
+ * Checksum algorithms available for {@link LibraryFile} verification. The algorithm is chosen by
+ * <code>CreateManifest --checksum-algorithm=</code> and recorded in the manifest. Manifests without
+ * the attribute use {@link #adler32}, which was the only algorithm in earlier versions.
+ * <p>
+ * The 64 bit algorithms are rendered as unsigned decimal numbers, which keeps Adler32 values identical
+ * to what older manifests contain. SHA-256 is rendered as lowercase hex.
+ */
+public enum ChecksumAlgorithm {
+    adler32 {
+        public Digest newDigest() {
+            return new ChecksumDigest(new Adler32());
+        }
+    },
+    crc32c {
+        public Digest newDigest() {
+            return new ChecksumDigest(Crc32c.create());
+        }
+    },
+    xxhash64 {
+        public Digest newDigest() {
+            return new ChecksumDigest(new XxHash64());
+        }
+    },
+    sha256 {
+        public Digest newDigest() {
+            try {
+                return new MessageDigestDigest(MessageDigest.getInstance("SHA-256"));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    public static final ChecksumAlgorithm DEFAULT = adler32;
+
+    public abstract Digest newDigest();
+
+    public String checksum(Path path) throws IOException {
+        try (InputStream input = Files.newInputStream(path)) {
+            Digest digest = newDigest();
+            byte[] buf = new byte[65536];
+
+            int read;
+            while ((read = input.read(buf)) > -1)
+                digest.update(buf, 0, read);
+
+            return digest.value();
+        }
+    }
+
+    /**
+     * Streaming digest, fed with the bytes of a file as they are read or downloaded.
+     */
+    public interface Digest {
+        void update(byte[] buf, int off, int len);
+
+        String value();
+    }
+
+    private static class ChecksumDigest implements Digest {
+        private final Checksum checksum;
+
+        ChecksumDigest(Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        public void update(byte[] buf, int off, int len) {
+            checksum.update(buf, off, len);
+        }
+
+        public String value() {
+            return Long.toUnsignedString(checksum.getValue());
+        }
+    }
+
+    private static class MessageDigestDigest implements Digest {
+        private final MessageDigest digest;
+
+        MessageDigestDigest(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        public void update(byte[] buf, int off, int len) {
+            digest.update(buf, off, len);
+        }
+
+        public String value() {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest())
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package fxlauncher;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Optional parts of the application that are only downloaded when the application asks for them.
+ * <p>
+ * CreateManifest puts files into named components with <code>--component-&lt;name&gt;=&lt;glob&gt;,...</code>.
+ * Only the files outside of components are synced at startup and put on the class path. The running application
+ * requests a component, which downloads and verifies its files with progress and completes with a class loader for
+ * its jars. The parent of that class loader is the class loader of the application, so the component sees the
+ * application classes.
+ *
+ * <pre>
+ * Components.get().require("reporting", progress -&gt; Platform.runLater(() -&gt; bar.setProgress(progress)))
+ *         .thenAccept(loader -&gt; ServiceLoader.load(ReportEngine.class, loader).forEach(engines::add));
+ * </pre>
+ * <p>
+ * A component is verified against the manifest the first time it is requested in a session, and later requests
+ * get the same class loader. Progress is reported on the component thread, and only to the first caller.
+ */
+public class Components {
+    private static final Logger log = Logger.getLogger("Components");
+
+    private static volatile Components current;
+
+    private final AbstractLauncher<?> launcher;
+    // Only the uri, mirrors and parameters are needed to download
+    private final FXManifest source;
+    private final Path cacheDir;
+    private final ClassLoader parent;
+    private final Map<String, List<LibraryFile>> files = new TreeMap<>();
+    private final Map<String, CompletableFuture<ClassLoader>> requested = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FXLauncher-Components");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    Components(AbstractLauncher<?> launcher, FXManifest manifest, Path cacheDir, ClassLoader parent) {
+        this.launcher = launcher;
+        this.source = manifest.summary();
+        this.cacheDir = cacheDir;
+        this.parent = parent;
+        for (LibraryFile lib : manifest.files)
+            if (!lib.isCore() && lib.loadForCurrentPlatform())
+                files.computeIfAbsent(lib.component, name -> new ArrayList<>()).add(lib);
+        current = this;
+    }
+
+    /**
+     * The components of the application started by FXLauncher, or null if it wasn't started by FXLauncher
+     */
+    public static Components get() {
+        return current;
+    }
+
+    /**
+     * The names of the optional components in the manifest
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(files.keySet());
+    }
+
+    /**
+     * The total size of the files of a component in bytes, to tell the user before downloading it
+     */
+    public long getSize(String name) {
+        return files.getOrDefault(name, Collections.emptyList()).stream().mapToLong(lib -> lib.size).sum();
+    }
+
+    /**
+     * True if all files of the component are in the cache dir with the expected size. Their checksums are verified
+     * when the component is requested.
+     */
+    public boolean isInstalled(String name) {
+        List<LibraryFile> libs = files.get(name);
+        return libs != null && libs.stream().noneMatch(lib -> lib.sizeDiffers(cacheDir));
+    }
+
+    public CompletableFuture<ClassLoader> require(String name) {
+        return require(name, progress -> {
+        });
+    }
+
+    /**
+     * Download the files of the component that are missing or outdated, verify them and create a class loader
+     * for its jars. A failed request can be retried.
+     *
+     * @param progress download progress between 0 and 1
+     */
+    public CompletableFuture<ClassLoader> require(String name, DoubleConsumer progress) {
+        if (!files.containsKey(name)) {
+            CompletableFuture<ClassLoader> unknown = new CompletableFuture<>();
+            unknown.completeExceptionally(new IllegalArgumentException(String.format("Unknown component %s", name)));
+            return unknown;
+        }
+        return requested.compute(name, (key, existing) -> existing != null && !existing.isCompletedExceptionally()
+                ? existing
+                : CompletableFuture.supplyAsync(() -> install(key, progress), executor));
+    }
+
+    @SuppressWarnings("try")
+    private ClassLoader install(String name, DoubleConsumer progress) {
+        List<LibraryFile> libs = files.get(name);
+        // Only held, so another launcher or the update service of this one doesn't sync the cache dir meanwhile
+        try (CacheLock lock = CacheLock.acquire(cacheDir, leaderProgress -> {
+        })) {
+            launcher.syncComponent(source, libs, cacheDir, progress);
+        } catch (Exception e) {
+            throw new CompletionException(String.format("Unable to install component %s", name), e);
+        }
+        progress.accept(1);
+
+        URL[] jars = libs.stream().filter(lib -> lib.file.endsWith(".jar")).map(lib -> lib.toURL(cacheDir)).toArray(URL[]::new);
+        log.info(String.format("Installed component %s, %d files", name, libs.size()));
+        return new URLClassLoader(jars, parent);
+    }
+}
@@ -0,0 +1,35 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opens connections to the app repository, adding basic authentication when the uri carries user info.
+ */
+final class Connections {
+    private Connections() {
+    }
+
+    static URLConnection open(URI uri) throws IOException {
+        URLConnection connection = uri.toURL().openConnection();
+        if (uri.getUserInfo() != null) {
+            byte[] payload = uri.getUserInfo().getBytes(StandardCharsets.UTF_8);
+            String encoded = Base64.getEncoder().encodeToString(payload);
+            connection.setRequestProperty("Authorization", String.format("Basic %s", encoded));
+        }
+        return connection;
+    }
+
+    /**
+     * Resolve a file relative to a repository uri.
+     * <p>
+     * We avoid using uri.resolve() here so as to not break UNC paths. See issue #143
+     */
+    static URI resolve(URI base, String file) {
+        String separator = base.getPath() != null && base.getPath().endsWith("/") ? "" : "/";
+        return URI.create(base.toString() + separator + file);
+    }
+}
@@ -0,0 +1,57 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Publishes every file of the manifest a second time under a path derived from its content, so the bytes behind a
+ * url never change and CDNs and proxies can cache them for good.
+ * <p>
+ * <code>CreateManifest --content-addressed=true</code> copies each file to
+ * <code>objects/&lt;sha256 prefix&gt;/&lt;sha256&gt;/&lt;file name&gt;</code> and records that path in the
+ * <code>object</code> attribute of the {@link LibraryFile}. The launcher downloads from the object path when there
+ * is one and allows intermediary caches to answer. Objects of earlier versions are kept, so launchers still
+ * syncing an older manifest can finish. Serve the <code>objects</code> folder with
+ * <code>Cache-Control: public, max-age=31536000, immutable</code>.
+ */
+final class ContentAddressed {
+    static final String DIR = "objects";
+
+    private ContentAddressed() {
+    }
+
+    /**
+     * Write the objects for the manifest files below appPath. Unchanged files reuse the object of the previous
+     * manifest without being hashed again.
+     */
+    static void create(FXManifest manifest, Path appPath, FXManifest previous) throws IOException {
+        Map<String, LibraryFile> previousFiles = new HashMap<>();
+        if (previous != null)
+            for (LibraryFile lib : previous.files) previousFiles.put(lib.file, lib);
+
+        for (LibraryFile lib : manifest.files) {
+            Path source = appPath.resolve(lib.file);
+            LibraryFile known = previousFiles.get(lib.file);
+            if (known != null && known.object != null && known.checksum.equals(lib.checksum)
+                    && known.isUnchanged(source, lib.algorithm()) && Files.exists(appPath.resolve(known.object))) {
+                lib.object = known.object;
+                continue;
+            }
+            // The checksum is only strong enough to name the content if it is a SHA-256 already
+            String hash = lib.algorithm() == ChecksumAlgorithm.sha256 ? lib.checksum : ChecksumAlgorithm.sha256.checksum(source);
+            lib.object = String.format("%s/%s/%s/%s", DIR, hash.substring(0, 2), hash, source.getFileName());
+
+            Path target = appPath.resolve(lib.object);
+            if (Files.exists(target)) continue;
+            Files.createDirectories(target.getParent());
+            // Copied rather than linked, a linked object would change with the file it was created from
+            Path part = target.resolveSibling(target.getFileName() + ".part");
+            Files.copy(source, part, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
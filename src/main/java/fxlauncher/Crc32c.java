@@ -0,0 +1,65 @@
+package fxlauncher;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli). On Java 9+ {@link #create()} returns <code>java.util.zip.CRC32C</code>, which the
+ * JIT turns into the SSE4.2/ARMv8 CRC instructions. On Java 8 it falls back to this slicing-by-8
+ * table implementation.
+ */
+class Crc32c implements Checksum {
+    private static final int POLY = 0x82F63B78;
+    private static final int[][] TABLE = new int[8][256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int crc = n;
+            for (int k = 0; k < 8; k++)
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLY : crc >>> 1;
+            TABLE[0][n] = crc;
+        }
+        for (int n = 0; n < 256; n++) {
+            int crc = TABLE[0][n];
+            for (int t = 1; t < 8; t++) {
+                crc = TABLE[0][crc & 0xff] ^ (crc >>> 8);
+                TABLE[t][n] = crc;
+            }
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    static Checksum create() {
+        try {
+            return (Checksum) Class.forName("java.util.zip.CRC32C").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return new Crc32c();
+        }
+    }
+
+    public void update(int b) {
+        crc = TABLE[0][(crc ^ b) & 0xff] ^ (crc >>> 8);
+    }
+
+    public void update(byte[] b, int off, int len) {
+        int c = crc;
+        while (len >= 8) {
+            c ^= (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+            c = TABLE[7][c & 0xff] ^ TABLE[6][(c >>> 8) & 0xff] ^ TABLE[5][(c >>> 16) & 0xff] ^ TABLE[4][c >>> 24]
+                    ^ TABLE[3][b[off + 4] & 0xff] ^ TABLE[2][b[off + 5] & 0xff] ^ TABLE[1][b[off + 6] & 0xff] ^ TABLE[0][b[off + 7] & 0xff];
+            off += 8;
+            len -= 8;
+        }
+        while (len-- > 0)
+            c = TABLE[0][(c ^ b[off++]) & 0xff] ^ (c >>> 8);
+        crc = c;
+    }
+
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
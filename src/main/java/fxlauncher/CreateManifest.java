@@ -6,14 +6,20 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 public class CreateManifest {
+    private static final Logger log = Logger.getLogger("CreateManifest");
+
     private static ArrayList<String> includeExtensions = new ArrayList<>();
+    private static int hashThreads = Runtime.getRuntime().availableProcessors();
 
     static {
         includeExtensions.addAll(Arrays.asList("jar", "war"));
@@ -21,7 +27,8 @@ public class CreateManifest {
 
     public static void main(String[] args) throws IOException, URISyntaxException {
         URI baseURI = URI.create(args[0]);
-        String launchClass = args[1];
+        // An empty launch class starts the first file in a child process
+        String launchClass = args[1].isEmpty() ? null : args[1];
         Path appPath = Paths.get(args[2]);
 
         String updateText = null;
@@ -31,10 +38,21 @@ public class CreateManifest {
         String parameters = null;
         String whatsNew = null;
         String whatNew = null;
+        Boolean whatsNewWebView = null;
         String preloadNativeLibraries = null;
         Boolean lingeringUpdateScreen = false;
         Boolean stopOnUpdateErrorsDeprecated = null;
         String version = null;
+        Integer rolloutPercentage = null;
+        String checkInterval = null;
+        Map<String, List<String>> components = new LinkedHashMap<>();
+        ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithm.DEFAULT;
+        List<URI> mirrors = new ArrayList<>();
+        boolean bundles = false;
+        boolean contentAddressed = false;
+        boolean incremental = false;
+        List<JvmArgs> jvmArgs = new ArrayList<>();
+        long bundleChunkSize = Bundle.DEFAULT_CHUNK_SIZE;
 
         if (args.length > 3) {
             // Parse named parameters
@@ -54,6 +72,18 @@ public class CreateManifest {
                 if (named.containsKey("version")) {
                     version = named.get("version");
                 }
+                // Only offer the release to this percentage of the installations
+                if (named.containsKey("rollout-percentage")) {
+                    rolloutPercentage = Integer.valueOf(named.get("rollout-percentage"));
+                }
+                // Starts within this interval of the last check don't ask the server
+                if (named.containsKey("check-interval")) {
+                    checkInterval = named.get("check-interval");
+                }
+                // Configure the checksum algorithm used to verify files
+                if (named.containsKey("checksum-algorithm")) {
+                    checksumAlgorithm = ChecksumAlgorithm.valueOf(named.get("checksum-algorithm").toLowerCase());
+                }
                 // Configure cacheDir
                 if (named.containsKey("cache-dir")) {
                     cacheDir = named.get("cache-dir");
@@ -79,6 +109,44 @@ public class CreateManifest {
                 // Configure the whats-new option
                 if (named.containsKey("whats-new"))
                     whatsNew = named.get("whats-new");
+                if (named.containsKey("whats-new-webview"))
+                    whatsNewWebView = Boolean.valueOf(named.get("whats-new-webview"));
+
+                // Additional repositories serving the same files, in order of preference
+                if (named.containsKey("mirrors"))
+                    Arrays.stream(named.get("mirrors").split(","))
+                            .filter(s -> s != null && !s.isEmpty())
+                            .map(s -> URI.create(Strings.ensureEndingSlash(s.trim())))
+                            .forEach(mirrors::add);
+
+                // JVM options for applications started in a child process, for all or one platform
+                if (named.containsKey("jvm-args"))
+                    jvmArgs.add(new JvmArgs(null, named.get("jvm-args")));
+                for (OS os : Arrays.asList(OS.win, OS.mac, OS.linux))
+                    if (named.containsKey("jvm-args-" + os))
+                        jvmArgs.add(new JvmArgs(os, named.get("jvm-args-" + os)));
+
+                // Reuse the checksums of unchanged files from the previous app.xml
+                if (named.containsKey("incremental"))
+                    incremental = Boolean.parseBoolean(named.get("incremental"));
+                if (named.containsKey("hash-threads"))
+                    hashThreads = Integer.parseInt(named.get("hash-threads"));
+
+                // Create bundle archives for first installs and large updates
+                if (named.containsKey("bundles"))
+                    bundles = Boolean.parseBoolean(named.get("bundles"));
+                if (named.containsKey("bundle-chunk-size"))
+                    bundleChunkSize = Long.parseLong(named.get("bundle-chunk-size"));
+
+                // Publish every file under a path derived from its content as well
+                if (named.containsKey("content-addressed"))
+                    contentAddressed = Boolean.parseBoolean(named.get("content-addressed"));
+
+                // Optional components, downloaded when the application asks for them
+                params.getRaw().stream()
+                        .filter(raw -> raw.startsWith("--component-") && raw.contains("="))
+                        .forEach(raw -> components.put(raw.substring("--component-".length(), raw.indexOf('=')),
+                                Arrays.asList(raw.substring(raw.indexOf('=') + 1).split(","))));
 
                 // Add additional files with these extensions to manifest
                 if (named.containsKey("include-extensions"))
@@ -110,6 +178,17 @@ public class CreateManifest {
                 if (raw.startsWith("--lingering-update-screen")) continue;
                 if (raw.startsWith("--what-new")) continue;
                 if (raw.startsWith("--version")) continue;
+                if (raw.startsWith("--checksum-algorithm=")) continue;
+                if (raw.startsWith("--mirrors=")) continue;
+                if (raw.startsWith("--bundles=")) continue;
+                if (raw.startsWith("--incremental=")) continue;
+                if (raw.startsWith("--jvm-args")) continue;
+                if (raw.startsWith("--hash-threads=")) continue;
+                if (raw.startsWith("--bundle-chunk-size=")) continue;
+                if (raw.startsWith("--content-addressed=")) continue;
+                if (raw.startsWith("--rollout-percentage=")) continue;
+                if (raw.startsWith("--check-interval=")) continue;
+                if (raw.startsWith("--component-")) continue;
                 if (rest.length() > 0) rest.append(" ");
                 rest.append(raw);
             }
@@ -119,15 +198,22 @@ public class CreateManifest {
                 parameters = rest.toString();
         }
 
-        FXManifest manifest = create(baseURI, launchClass, appPath);
+        Path manifestPath = appPath.resolve("app.xml");
+        FXManifest previous = incremental && Files.exists(manifestPath) ? JAXB.unmarshal(manifestPath.toFile(), FXManifest.class) : null;
+        FXManifest manifest = create(baseURI, launchClass, appPath, checksumAlgorithm, previous);
         if (updateText != null) manifest.updateText = updateText;
         if (cacheDir != null) manifest.cacheDir = cacheDir;
         if (acceptDowngrade != null) manifest.acceptDowngrade = acceptDowngrade;
         if (parameters != null) manifest.parameters = parameters;
         if (preloadNativeLibraries != null) manifest.preloadNativeLibraries = preloadNativeLibraries;
         if (whatsNew != null) manifest.whatsNewPage = whatsNew;
+        if (whatsNewWebView != null) manifest.whatsNewWebView = whatsNewWebView;
         if (whatNew != null) manifest.whatNew = whatNew;
         if (version != null) manifest.version = version;
+        if (rolloutPercentage != null) manifest.rolloutPercentage = rolloutPercentage;
+        if (checkInterval != null) manifest.checkInterval = checkInterval;
+        manifest.mirrors.addAll(mirrors);
+        manifest.jvmArgs.addAll(jvmArgs);
         manifest.lingeringUpdateScreen = lingeringUpdateScreen;
 
         // Use --stop-on-update-errors if it was specified.
@@ -146,29 +232,120 @@ public class CreateManifest {
             System.out.println("Warning: --stopOnUpdateErrors is deprecated. "
                     + "Use --stop-on-update-errors instead.");
         }
-        JAXB.marshal(manifest, appPath.resolve("app.xml").toFile());
+        assignComponents(manifest, components);
+        if (contentAddressed) ContentAddressed.create(manifest, appPath, previous);
+        if (bundles) Bundle.create(manifest, appPath, bundleChunkSize);
+        JAXB.marshal(manifest, manifestPath.toFile());
+    }
+
+    /**
+     * Put every file matching one of the globs of a component into that component. The globs are matched against
+     * the path relative to the app folder, and the first component with a matching glob wins.
+     */
+    static void assignComponents(FXManifest manifest, Map<String, List<String>> components) {
+        Map<String, List<PathMatcher>> matchers = new LinkedHashMap<>();
+        components.forEach((name, globs) -> matchers.put(name, globs.stream()
+                .filter(glob -> !glob.trim().isEmpty())
+                .map(glob -> FileSystems.getDefault().getPathMatcher("glob:" + glob.trim()))
+                .collect(Collectors.toList())));
+
+        for (LibraryFile lib : manifest.files) {
+            Path path = Paths.get(lib.file);
+            lib.component = matchers.entrySet().stream()
+                    .filter(component -> component.getValue().stream().anyMatch(matcher -> matcher.matches(path)))
+                    .map(Map.Entry::getKey)
+                    .findFirst().orElse(null);
+        }
+        components.keySet().forEach(name -> log.info(String.format("Component %s: %d files", name,
+                manifest.files.stream().filter(lib -> name.equals(lib.component)).count())));
     }
 
     public static FXManifest create(URI baseURI, String launchClass, Path appPath) throws IOException, URISyntaxException {
+        return create(baseURI, launchClass, appPath, ChecksumAlgorithm.DEFAULT);
+    }
+
+    public static FXManifest create(URI baseURI, String launchClass, Path appPath, ChecksumAlgorithm checksumAlgorithm) throws IOException, URISyntaxException {
+        return create(baseURI, launchClass, appPath, checksumAlgorithm, null);
+    }
+
+    /**
+     * Create the manifest, hashing the files in parallel.
+     *
+     * @param previous the manifest of an earlier run. Files with the same size and modification time as recorded
+     *                 there keep their checksum instead of being read again. May be null.
+     */
+    public static FXManifest create(URI baseURI, String launchClass, Path appPath, ChecksumAlgorithm checksumAlgorithm, FXManifest previous) throws IOException, URISyntaxException {
+        long start = System.currentTimeMillis();
         FXManifest manifest = new FXManifest();
-        manifest.ts = System.currentTimeMillis();
+        manifest.ts = start;
         manifest.uri = baseURI;
         manifest.launchClass = launchClass;
+        // Leave the attribute out for Adler32 so older launchers can still read the manifest
+        if (checksumAlgorithm != ChecksumAlgorithm.DEFAULT)
+            manifest.checksumAlgorithm = checksumAlgorithm;
 
         if (!manifest.uri.getPath().endsWith("/")) {
             manifest.uri = new URI(String.format("%s/", baseURI.toString()));
         }
+        List<Path> files = new ArrayList<>();
         Files.walkFileTree(appPath, new SimpleFileVisitor<Path>() {
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                // Bundles and objects from a previous run are copies of the manifest files, not files in their own right
+                boolean published = dir.equals(appPath.resolve(Bundle.DIR)) || dir.equals(appPath.resolve(ContentAddressed.DIR));
+                return published ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
                 if (!Files.isDirectory(file) && shouldIncludeInManifest(file) && !file.getFileName().toString().startsWith("fxlauncher"))
-                    manifest.files.add(new LibraryFile(appPath, file));
+                    files.add(file);
                 return FileVisitResult.CONTINUE;
             }
         });
 
+        Map<String, LibraryFile> previousFiles = new HashMap<>();
+        if (previous != null)
+            for (LibraryFile lib : previous.files) previousFiles.put(lib.file, lib);
+
+        AtomicInteger reused = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(hashThreads, files.size())));
+        try {
+            List<Future<LibraryFile>> hashed = new ArrayList<>();
+            for (Path file : files) {
+                hashed.add(executor.submit(() -> {
+                    LibraryFile known = previousFiles.get(appPath.relativize(file).toString().replace("\\", "/"));
+                    if (known != null && known.isUnchanged(file, checksumAlgorithm)) {
+                        reused.incrementAndGet();
+                        return new LibraryFile(appPath, file, checksumAlgorithm, known.checksum);
+                    }
+                    return new LibraryFile(appPath, file, checksumAlgorithm);
+                }));
+            }
+            // Collect in walk order, so the manifest is the same regardless of the number of threads
+            for (Future<LibraryFile> lib : hashed)
+                manifest.files.add(lib.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while hashing files", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        manifest.directories.addAll(DirectoryHash.compute(manifest.files));
+
+        log.info(String.format("Hashed %d files, reused %d checksums in %d ms", files.size() - reused.get(), reused.get(), System.currentTimeMillis() - start));
         return manifest;
     }
 
+    /**
+     * Set the number of threads used to hash files. Defaults to the number of available processors.
+     */
+    public static void setHashThreads(int hashThreads) {
+        CreateManifest.hashThreads = hashThreads;
+    }
+
     /**
      * Add the includeExtensions to the default list of "war" and "jar".
      * <p>
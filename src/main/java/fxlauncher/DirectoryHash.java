@@ -0,0 +1,162 @@
+package fxlauncher;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The hash of a directory of the manifest, over the entries of its files and the hashes of its subdirectories,
+ * so the directories form a Merkle tree. The hash of the root directory changes whenever any file changes, and a
+ * directory whose hash is unchanged contains exactly the same files as before, however deep.
+ * <p>
+ * The launcher remembers the hashes of the directories it has verified in <code>.fxlauncher.verified</code> in
+ * the cache dir. Files in a directory whose hash is the same as when it was verified are only checked for their
+ * size instead of their checksum, so only the changed parts of the tree are hashed again.
+ */
+public class DirectoryHash {
+    private static final Logger log = Logger.getLogger("DirectoryHash");
+    static final String VERIFIED_FILE = ".fxlauncher.verified";
+
+    /**
+     * The directory relative to the manifest uri, without a trailing slash. Empty for the root directory.
+     */
+    @XmlAttribute
+    String path;
+    @XmlAttribute
+    String hash;
+
+    public DirectoryHash() {
+    }
+
+    DirectoryHash(String path, String hash) {
+        this.path = path;
+        this.hash = hash;
+    }
+
+    /**
+     * Compute the hashes of all directories containing files of the manifest, parents before children.
+     */
+    static List<DirectoryHash> compute(List<LibraryFile> files) {
+        // Entries of each directory, sorted by name so the hash doesn't depend on the walk order
+        Map<String, SortedMap<String, String>> entries = new TreeMap<>();
+        entries.put("", new TreeMap<>());
+        for (LibraryFile lib : files) {
+            String dir = parent(lib.file);
+            entries.computeIfAbsent(dir, d -> new TreeMap<>()).put("f " + name(lib.file),
+                    String.format("%d %s %s %s", lib.size, lib.checksum, lib.algorithm(), lib.os != null ? lib.os : ""));
+            // Make sure every ancestor has an entry
+            while (!dir.isEmpty()) {
+                dir = parent(dir);
+                entries.computeIfAbsent(dir, d -> new TreeMap<>());
+            }
+        }
+
+        // Children sort after their parents, so hash them in reverse order
+        Map<String, String> hashes = new HashMap<>();
+        List<String> dirs = new ArrayList<>(entries.keySet());
+        for (int i = dirs.size() - 1; i >= 0; i--) {
+            String dir = dirs.get(i);
+            String hash = sha256(entries.get(dir));
+            hashes.put(dir, hash);
+            if (!dir.isEmpty()) entries.get(parent(dir)).put("d " + name(dir), hash);
+        }
+
+        List<DirectoryHash> result = new ArrayList<>();
+        for (String dir : dirs) result.add(new DirectoryHash(dir, hashes.get(dir)));
+        return result;
+    }
+
+    static String parent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    private static String name(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static String sha256(SortedMap<String, String> entries) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, String> entry : entries.entrySet())
+                digest.update(String.format("%s %s\n", entry.getKey(), entry.getValue()).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The directories of the manifest that are unchanged since they were last verified in the cache dir.
+     * A directory counts as unchanged if it or any of its ancestors has the verified hash.
+     */
+    static Set<String> unchangedSince(FXManifest manifest, Properties verified) {
+        Set<String> unchanged = new HashSet<>();
+        // Parents come first, so the children of an unchanged directory are found without hashing anything
+        for (DirectoryHash dir : manifest.directories) {
+            if (dir.hash.equals(verified.getProperty(dir.path)) || (!dir.path.isEmpty() && unchanged.contains(parent(dir.path))))
+                unchanged.add(dir.path);
+        }
+        return unchanged;
+    }
+
+    static Properties loadVerified(Path cacheDir) {
+        Properties verified = new Properties();
+        Path file = cacheDir.resolve(VERIFIED_FILE);
+        if (Files.exists(file)) {
+            try (InputStream input = Files.newInputStream(file)) {
+                verified.load(input);
+            } catch (IOException e) {
+                log.log(Level.FINE, "Unable to read verified directories", e);
+            }
+        }
+        return verified;
+    }
+
+    /**
+     * Remember the directories of the manifest as verified, except the ones containing a file in dirty.
+     */
+    static void saveVerified(Path cacheDir, FXManifest manifest, Collection<LibraryFile> dirty) {
+        Set<String> excluded = new HashSet<>();
+        for (LibraryFile lib : dirty) {
+            String dir = parent(lib.file);
+            while (excluded.add(dir) && !dir.isEmpty()) dir = parent(dir);
+        }
+        Properties verified = new Properties();
+        for (DirectoryHash dir : manifest.directories)
+            if (!excluded.contains(dir.path)) verified.setProperty(dir.path, dir.hash);
+
+        try (OutputStream output = Files.newOutputStream(cacheDir.resolve(VERIFIED_FILE))) {
+            verified.store(output, "FXLauncher verified directories");
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to store verified directories", e);
+        }
+    }
+
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        DirectoryHash that = (DirectoryHash) o;
+
+        if (!path.equals(that.path)) return false;
+        return hash.equals(that.hash);
+    }
+
+    public int hashCode() {
+        int result = path.hashCode();
+        result = 31 * result + hash.hashCode();
+        return result;
+    }
+}
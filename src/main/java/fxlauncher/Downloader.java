@@ -0,0 +1,355 @@
+package fxlauncher;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens and copies download streams with connect/read timeouts, stall detection and hedged requests.
+ * <p>
+ * All settings can be given on the command line or in the manifest parameters:
+ * <ul>
+ * <li><code>--connect-timeout=</code> and <code>--read-timeout=</code> in milliseconds</li>
+ * <li><code>--min-throughput=</code> in bytes per second, measured over <code>--stall-window=</code> milliseconds.
+ * A download slower than that is aborted as stalled and retried on the next mirror.</li>
+ * <li><code>--max-bandwidth=</code> caps the download rate of all streams together, in bytes per second.</li>
+ * <li><code>--use-caches=false</code> asks proxies to revalidate everything but content addressed objects, which
+ * never change and are always allowed from caches.</li>
+ * <li><code>--hedge=false</code> disables hedging. Otherwise, once enough requests have been seen, a request that
+ * has not produced its first byte within the p95 of recent requests gets a duplicate on the next mirror, and whichever
+ * answers first is used.</li>
+ * </ul>
+ */
+class Downloader {
+    private static final Logger log = Logger.getLogger("Downloader");
+
+    private static final int HEDGE_MIN_SAMPLES = 8;
+    private static final long HEDGE_MIN_DELAY = 50;
+    private static final long SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long TRANSFER_CHUNK = 8 * 1024 * 1024;
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final long minThroughput;
+    private final long stallWindow;
+    private final boolean hedge;
+    private final boolean useCaches;
+    private final long maxBandwidth;
+    private final Object throttle = new Object();
+    private long throttledUntil;
+    private final SyncMetrics metrics;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "FXLauncher-Download");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    Downloader(Map<String, String> namedParams, SyncMetrics metrics) {
+        this.connectTimeout = Integer.parseInt(namedParams.getOrDefault("connect-timeout", "10000"));
+        this.readTimeout = Integer.parseInt(namedParams.getOrDefault("read-timeout", "30000"));
+        this.maxBandwidth = Long.parseLong(namedParams.getOrDefault("max-bandwidth", "0"));
+        // A capped download must not be mistaken for a stall
+        long minThroughput = Long.parseLong(namedParams.getOrDefault("min-throughput", "1024"));
+        this.minThroughput = maxBandwidth > 0 ? Math.min(minThroughput, maxBandwidth / 4) : minThroughput;
+        this.stallWindow = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(namedParams.getOrDefault("stall-window", "15000")));
+        this.hedge = Boolean.parseBoolean(namedParams.getOrDefault("hedge", "true"));
+        this.useCaches = Boolean.parseBoolean(namedParams.getOrDefault("use-caches", "true"));
+        this.metrics = metrics;
+    }
+
+    int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Open a stream, recording the time to first byte.
+     *
+     * @param immutable true if the content behind the uri never changes, so caches may answer without revalidating
+     */
+    InputStream open(URI uri, boolean immutable) throws IOException {
+        metrics.request();
+        if ("file".equals(uri.getScheme()))
+            return Files.newInputStream(Paths.get(uri.getPath()));
+
+        long start = System.nanoTime();
+        URLConnection connection = Connections.open(uri);
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        // Without caches the request carries Cache-Control: no-cache, so proxies go back to the server
+        connection.setUseCaches(immutable || useCaches);
+        // Servers with precompressed variants, like the UpdateServer, can send a much smaller app.xml
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (connection instanceof HttpURLConnection) {
+            int status = ((HttpURLConnection) connection).getResponseCode();
+            if (status == 503 || status == 429)
+                throw new ServerBusyException(uri, status, retryAfter(connection.getHeaderField("Retry-After")));
+        }
+        InputStream input = connection.getInputStream();
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) input = new GZIPInputStream(input);
+        metrics.timeToFirstByte(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return input;
+    }
+
+    /**
+     * Open the primary uri, and if it is slower than the p95 time to first byte, race it against the hedge uri.
+     * The losing stream is closed as soon as it opens.
+     */
+    InputStream openHedged(URI primary, URI hedgeUri, boolean immutable) throws IOException {
+        long p95 = metrics.timeToFirstByteP95(HEDGE_MIN_SAMPLES);
+        if (!hedge || p95 < 0 || "file".equals(primary.getScheme()))
+            return open(primary, immutable);
+
+        CompletionService<InputStream> race = new ExecutorCompletionService<>(executor);
+        Future<InputStream> first = race.submit(() -> open(primary, immutable));
+        Future<InputStream> second = null;
+        IOException failure = null;
+        try {
+            Future<InputStream> done = race.poll(Math.max(p95, HEDGE_MIN_DELAY), TimeUnit.MILLISECONDS);
+            if (done == null) {
+                log.info(String.format("No response from %s after %d ms, hedging with %s", primary, p95, hedgeUri));
+                metrics.hedged();
+                second = race.submit(() -> open(hedgeUri, immutable));
+            }
+            int pending = second != null ? 2 : 1;
+            while (pending-- > 0) {
+                if (done == null) done = race.take();
+                try {
+                    InputStream winner = done.get();
+                    if (done == second) metrics.hedgeWon();
+                    Future<InputStream> loser = done == first ? second : first;
+                    if (loser != null) closeWhenOpened(loser);
+                    return winner;
+                } catch (ExecutionException ex) {
+                    IOException cause = ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+                    if (failure == null) failure = cause;
+                    else failure.addSuppressed(cause);
+                }
+                done = null;
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closeWhenOpened(first);
+            if (second != null) closeWhenOpened(second);
+            throw new IOException("Interrupted while downloading", e);
+        }
+    }
+
+    private void closeWhenOpened(Future<InputStream> future) {
+        executor.execute(() -> {
+            try {
+                future.get().close();
+            } catch (Exception ignored) {
+            }
+        });
+    }
+
+    /**
+     * Copy the stream, aborting with a {@link StallException} when less than the minimum throughput was
+     * transferred over the stall window.
+     *
+     * @return the number of bytes copied
+     */
+    long copy(InputStream input, OutputStream output, LongConsumer progress) throws IOException {
+        InputStream monitored = monitor(input, progress);
+        byte[] buf = new byte[65536];
+        long written = 0;
+        int read;
+        while ((read = monitored.read(buf)) > -1) {
+            output.write(buf, 0, read);
+            written += read;
+        }
+        return written;
+    }
+
+    /**
+     * Copy a file of a <code>file:</code> repository with {@link FileChannel#transferTo}, so the operating system
+     * moves the bytes and they never pass through the heap. Progress is reported per chunk.
+     *
+     * @return the number of bytes copied
+     */
+    long copyFile(Path source, Path target, LongConsumer progress) throws IOException {
+        metrics.request();
+        try (FileChannel input = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel output = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = input.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = input.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), output);
+                if (transferred <= 0)
+                    throw new IOException(String.format("%s ended after %d of %d bytes", source, position, size));
+                position += transferred;
+                metrics.bytes(transferred);
+                progress.accept(position);
+                throttle(transferred);
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Wrap a download stream so that bytes are counted, progress is reported and stalls are detected.
+     */
+    InputStream monitor(InputStream input, LongConsumer progress) {
+        return new MonitoredInputStream(input, progress);
+    }
+
+    private class MonitoredInputStream extends FilterInputStream {
+        private final LongConsumer progress;
+        private final ArrayDeque<long[]> samples = new ArrayDeque<>();
+        private long count;
+
+        MonitoredInputStream(InputStream input, LongConsumer progress) {
+            super(input);
+            this.progress = progress;
+            samples.add(new long[]{System.nanoTime(), 0});
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read;
+            try {
+                read = super.read(b, off, len);
+            } catch (SocketTimeoutException ex) {
+                metrics.stall();
+                throw ex;
+            }
+            if (read > 0) {
+                count(read);
+                throttle(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            if (skipped > 0) count(skipped);
+            return skipped;
+        }
+
+        private void count(long read) throws StallException {
+            count += read;
+            metrics.bytes(read);
+            progress.accept(count);
+
+            long now = System.nanoTime();
+            if (now - samples.getLast()[0] < SAMPLE_INTERVAL) return;
+
+            samples.add(new long[]{now, count});
+            // Drop samples while the next one still covers the whole window
+            while (samples.size() > 1) {
+                long[] head = samples.removeFirst();
+                if (now - samples.getFirst()[0] < stallWindow) {
+                    samples.addFirst(head);
+                    break;
+                }
+            }
+            long[] oldest = samples.getFirst();
+            long elapsed = now - oldest[0];
+            if (minThroughput > 0 && elapsed >= stallWindow && (count - oldest[1]) * 1_000_000_000L / elapsed < minThroughput) {
+                metrics.stall();
+                throw new StallException(String.format("Only %d bytes in the last %d ms", count - oldest[1], TimeUnit.NANOSECONDS.toMillis(elapsed)));
+            }
+        }
+    }
+
+    /**
+     * Wait until the bytes just read fit into the bandwidth cap. Every read books its share of the cap after
+     * the reads before it, so parallel downloads share it.
+     */
+    private void throttle(long read) throws InterruptedIOException {
+        if (maxBandwidth <= 0) return;
+        long wait;
+        synchronized (throttle) {
+            long now = System.nanoTime();
+            throttledUntil = Math.max(throttledUntil, now) + read * 1_000_000_000L / maxBandwidth;
+            wait = throttledUntil - now;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttling download");
+        }
+    }
+
+    static class StallException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        StallException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The server is overloaded and asked to come back later
+     */
+    static class ServerBusyException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * When to ask again according to Retry-After, or 0 if the server didn't say
+         */
+        final long retryAt;
+
+        ServerBusyException(URI uri, int status, long retryAt) {
+            super(String.format("%s answered %d%s", uri, status, retryAt > 0 ? String.format(", retry after %tT", retryAt) : ""));
+            this.retryAt = retryAt;
+        }
+    }
+
+    /**
+     * Parse a Retry-After header, either seconds or an HTTP date, into a time. Capped at a day.
+     */
+    static long retryAfter(String header) {
+        if (header == null) return 0;
+        long now = System.currentTimeMillis();
+        long at;
+        try {
+            at = now + TimeUnit.SECONDS.toMillis(Long.parseLong(header.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                at = ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ex) {
+                return 0;
+            }
+        }
+        return Math.min(Math.max(at, now), now + TimeUnit.DAYS.toMillis(1));
+    }
+
+    void logMetrics() {
+        log.log(metrics.getStalls() > 0 || metrics.getRetries() > 0 ? Level.WARNING : Level.INFO, String.format("Sync metrics: %s", metrics));
+    }
+}
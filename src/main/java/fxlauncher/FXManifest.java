@@ -9,24 +9,43 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URLConnection;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static fxlauncher.Strings.ensureEndingSlash;
 
 @XmlRootElement(name = "Application")
 public class FXManifest {
+    private static final Logger log = Logger.getLogger("FXManifest");
+    private static final Pattern DURATION = Pattern.compile("(\\d+)\\s*(ms|s|m|h|d)?");
+
     @XmlAttribute
     public Long ts;
     @XmlAttribute
     public URI uri;
     @XmlAttribute(name = "launch")
     public String launchClass;
+    @XmlAttribute
+    public ChecksumAlgorithm checksumAlgorithm;
     @XmlElement(name = "lib")
     public List<LibraryFile> files = new ArrayList<>();
+    @XmlElement(name = "mirror")
+    public List<URI> mirrors = new ArrayList<>();
+    @XmlElement(name = "bundle")
+    public List<Bundle> bundles = new ArrayList<>();
+    /**
+     * Hashes of the directories of the files, root first, see {@link DirectoryHash}
+     */
+    @XmlElement(name = "dir")
+    public List<DirectoryHash> directories = new ArrayList<>();
+    @XmlElement(name = "jvmArgs")
+    public List<JvmArgs> jvmArgs = new ArrayList<>();
     @XmlElement
     public String updateText = "更新中...";
     @XmlElement
@@ -43,16 +62,102 @@ public class FXManifest {
     public String preloadNativeLibraries;
     @XmlElement
     public String whatsNewPage;
+    /**
+     * Show the what's new page in a WebView instead of the built in markdown and html renderer
+     */
+    @XmlElement
+    public Boolean whatsNewWebView = false;
     @XmlElement
     public Boolean lingeringUpdateScreen = false;
     @XmlElement
     public String version = "1.0";
+    /**
+     * The percentage of installations that should take this manifest, all of them if not set. See {@link Rollout}.
+     */
+    @XmlElement
+    public Integer rolloutPercentage;
+    /**
+     * How long a start may use the cached manifest without checking for a newer one, like <code>15m</code>.
+     * A number with <code>ms</code>, <code>s</code>, <code>m</code>, <code>h</code> or <code>d</code>, seconds
+     * without a unit. Every start checks if not set.
+     */
+    @XmlElement
+    public String checkInterval;
 
     public List<String> getPreloadNativeLibraryList() {
         if (preloadNativeLibraries == null || preloadNativeLibraries.isEmpty()) return Collections.emptyList();
         return Arrays.asList(preloadNativeLibraries.split("\\|\\|"));
     }
 
+    /**
+     * The JVM options for a child process on the current platform, options for all platforms first
+     */
+    public List<String> getJvmArgs() {
+        List<String> args = new ArrayList<>();
+        if (jvmArgs == null) return args;
+        jvmArgs.stream().filter(it -> it.os == null).forEach(it -> args.addAll(split(it.args)));
+        jvmArgs.stream().filter(it -> it.os != null && it.appliesToCurrentPlatform()).forEach(it -> args.addAll(split(it.args)));
+        return args;
+    }
+
+    private static List<String> split(String args) {
+        if (args == null || args.trim().isEmpty()) return Collections.emptyList();
+        return Arrays.asList(args.trim().split("\\s+"));
+    }
+
+    /**
+     * A copy without the file list, bundles and JVM options, kept by the launcher after the application has started
+     */
+    FXManifest summary() {
+        FXManifest summary = new FXManifest();
+        summary.ts = ts;
+        summary.uri = uri;
+        summary.launchClass = launchClass;
+        summary.checksumAlgorithm = checksumAlgorithm;
+        summary.mirrors = new ArrayList<>(mirrors);
+        // The root hash alone still compares the summary to other manifests
+        if (getRootHash() != null) summary.directories.add(directories.get(0));
+        summary.updateText = updateText;
+        summary.whatNew = whatNew;
+        summary.parameters = parameters;
+        summary.cacheDir = cacheDir;
+        summary.acceptDowngrade = acceptDowngrade;
+        summary.stopOnUpdateErrors = stopOnUpdateErrors;
+        summary.preloadNativeLibraries = preloadNativeLibraries;
+        summary.whatsNewPage = whatsNewPage;
+        summary.whatsNewWebView = whatsNewWebView;
+        summary.lingeringUpdateScreen = lingeringUpdateScreen;
+        summary.version = version;
+        summary.rolloutPercentage = rolloutPercentage;
+        summary.checkInterval = checkInterval;
+        return summary;
+    }
+
+    /**
+     * The check interval in milliseconds, 0 if every start should check
+     */
+    public long getCheckIntervalMillis() {
+        if (checkInterval == null || checkInterval.trim().isEmpty()) return 0;
+        Matcher matcher = DURATION.matcher(checkInterval.trim().toLowerCase());
+        if (!matcher.matches()) {
+            log.warning(String.format("Ignoring invalid check interval '%s'", checkInterval));
+            return 0;
+        }
+        long value = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2) != null ? matcher.group(2) : "s") {
+            case "ms":
+                return value;
+            case "m":
+                return TimeUnit.MINUTES.toMillis(value);
+            case "h":
+                return TimeUnit.HOURS.toMillis(value);
+            case "d":
+                return TimeUnit.DAYS.toMillis(value);
+            default:
+                return TimeUnit.SECONDS.toMillis(value);
+        }
+    }
+
     public String getFilename() {
         return String.format("%s.xml", launchClass);
     }
@@ -63,6 +168,18 @@ public class FXManifest {
         return URI.create(ensureEndingSlash(uri.toString()) + "app.xml");
     }
 
+    /**
+     * The repositories this manifest can be synced from, the primary uri first followed by the mirrors.
+     */
+    public List<URI> getMirrorURIs() {
+        List<URI> uris = new ArrayList<>();
+        if (uri != null) uris.add(uri);
+        if (mirrors != null)
+            for (URI mirror : mirrors)
+                if (!uris.contains(mirror)) uris.add(mirror);
+        return uris;
+    }
+
     public Path getPath(Path cacheDir) {
         return cacheDir.resolve(getFilename());
     }
@@ -142,7 +259,16 @@ public class FXManifest {
         if (ts != null ? !ts.equals(that.ts) : that.ts != null) return false;
         if (uri != null ? !uri.equals(that.uri) : that.uri != null) return false;
         if (launchClass != null ? !launchClass.equals(that.launchClass) : that.launchClass != null) return false;
-        if (files != null ? !files.equals(that.files) : that.files != null) return false;
+        if (checksumAlgorithm != that.checksumAlgorithm) return false;
+        // The root hashes cover every file, so a large file list only needs to be compared without them
+        String rootHash = getRootHash();
+        String thatRootHash = that.getRootHash();
+        if (rootHash != null && thatRootHash != null) {
+            if (!rootHash.equals(thatRootHash)) return false;
+        } else if (files != null ? !files.equals(that.files) : that.files != null) return false;
+        if (mirrors != null ? !mirrors.equals(that.mirrors) : that.mirrors != null) return false;
+        if (bundles != null ? !bundles.equals(that.bundles) : that.bundles != null) return false;
+        if (jvmArgs != null ? !jvmArgs.equals(that.jvmArgs) : that.jvmArgs != null) return false;
         if (updateText != null ? !updateText.equals(that.updateText) : that.updateText != null) return false;
         if (parameters != null ? !parameters.equals(that.parameters) : that.parameters != null) return false;
         if (cacheDir != null ? !cacheDir.equals(that.cacheDir) : that.cacheDir != null) return false;
@@ -159,7 +285,11 @@ public class FXManifest {
         int result = ts != null ? ts.hashCode() : 0;
         result = 31 * result + (uri != null ? uri.hashCode() : 0);
         result = 31 * result + (launchClass != null ? launchClass.hashCode() : 0);
+        result = 31 * result + (checksumAlgorithm != null ? checksumAlgorithm.hashCode() : 0);
         result = 31 * result + (files != null ? files.hashCode() : 0);
+        result = 31 * result + (mirrors != null ? mirrors.hashCode() : 0);
+        result = 31 * result + (bundles != null ? bundles.hashCode() : 0);
+        result = 31 * result + (jvmArgs != null ? jvmArgs.hashCode() : 0);
         result = 31 * result + (updateText != null ? updateText.hashCode() : 0);
         result = 31 * result + (parameters != null ? parameters.hashCode() : 0);
         result = 31 * result + (cacheDir != null ? cacheDir.hashCode() : 0);
@@ -168,6 +298,13 @@ public class FXManifest {
         return result;
     }
 
+    /**
+     * The hash over all files, or null if the manifest was created without directory hashes
+     */
+    public String getRootHash() {
+        return directories == null || directories.isEmpty() || !directories.get(0).path.isEmpty() ? null : directories.get(0).hash;
+    }
+
     public boolean isNewerThan(FXManifest other) {
         return ts == null || other.ts == null || ts > other.ts;
     }
@@ -176,12 +313,7 @@ public class FXManifest {
         if (Objects.equals(uri.getScheme(), "file")) {
             return JAXB.unmarshal(new File(uri.getPath()), FXManifest.class);
         }
-        URLConnection connection = uri.toURL().openConnection();
-        if (uri.getUserInfo() != null) {
-            byte[] payload = uri.getUserInfo().getBytes(StandardCharsets.UTF_8);
-            String encoded = Base64.getEncoder().encodeToString(payload);
-            connection.setRequestProperty("Authorization", String.format("Basic %s", encoded));
-        }
+        URLConnection connection = Connections.open(uri);
         try (InputStream input = connection.getInputStream()) {
             return JAXB.unmarshal(input, FXManifest.class);
         }
@@ -15,6 +15,8 @@ public class HeadlessMainLauncher extends AbstractLauncher<Object>
 
     private Class<?> appClass;
 
+    private boolean manifestUpdated;
+
     public HeadlessMainLauncher(LauncherParams parameters)
     {
         this.parameters = parameters;
@@ -23,6 +25,7 @@ public class HeadlessMainLauncher extends AbstractLauncher<Object>
     public static void main(String[] args) throws Exception
     {
         List<String> mainArgs = Arrays.asList(args);
+        if (SingleInstance.forwardToRunningInstance(mainArgs)) return;
 
         LauncherParams parameters = new LauncherParams(mainArgs);
 
@@ -32,20 +35,53 @@ public class HeadlessMainLauncher extends AbstractLauncher<Object>
 
     protected void process() throws Exception
     {
-        syncManifest();
-
-        // replace parameters to deal with manifest settings
-        parameters = new LauncherParams(parameters, getManifest());
-
-        setupLogFile();
-        checkSSLIgnoreflag();
+        loadManifest();
+        syncAndPrepare();
+        launchApp();
+    }
 
-        updateManifest();
+    /**
+     * Sync the manifest and apply its parameters, logging and ssl settings. The cache dir stays locked for the
+     * file sync that follows.
+     *
+     * @return true if a newer manifest was loaded
+     */
+    protected boolean loadManifest() throws Exception
+    {
+        try
+        {
+            manifestUpdated = syncManifest();
+
+            // replace parameters to deal with manifest settings
+            parameters = new LauncherParams(parameters, getManifest());
+
+            setupLogFile();
+            checkSSLIgnoreflag();
+            return manifestUpdated;
+        }
+        catch (Exception ex)
+        {
+            unlockCacheDir();
+            throw ex;
+        }
+    }
 
-        syncFiles();
+    /**
+     * The manifest was synced before the log file was set up, don't ask the server a second time
+     */
+    @Override
+    protected boolean updateManifest()
+    {
+        return manifestUpdated;
+    }
 
-        createApplicationEnvironment();
-        launchApp();
+    /**
+     * Update errors are fatal in headless mode
+     */
+    @Override
+    protected void onSyncError(Exception error) throws Exception
+    {
+        throw error;
     }
 
     @Override
@@ -54,6 +90,15 @@ public class HeadlessMainLauncher extends AbstractLauncher<Object>
         return parameters;
     }
 
+    /**
+     * There is no JavaFX toolkit in headless mode, so phases are logged instead
+     */
+    @Override
+    public void setPhase(String phase)
+    {
+        log.info(phase);
+    }
+
     @Override
     protected void updateProgress(double progress)
     {
@@ -69,8 +114,12 @@ public class HeadlessMainLauncher extends AbstractLauncher<Object>
     private void launchApp() throws Exception
     {
         setPhase("Application Start");
+        // Make the update service available to the application through UpdateService.get()
+        getUpdateService();
 
         Method mainMethod = appClass.getMethod("main", String[].class);
+        // main usually blocks for the lifetime of the application, so let go of the launcher state first
+        releaseAfterHandoff(() -> {});
         mainMethod.invoke(null, (Object) new String[0]);
     }
 
@@ -0,0 +1,46 @@
+package fxlauncher;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlValue;
+
+/**
+ * JVM options for applications started in a child process, optionally for one operating system only.
+ * <p>
+ * The options are separated by whitespace and may contain placeholders: <code>${ram:0.25}</code> is replaced by
+ * that fraction of the physical memory in megabytes followed by <code>m</code>, and <code>${cacheDir}</code> by the
+ * absolute path of the cache dir, for example for a CDS archive.
+ */
+public class JvmArgs {
+    @XmlAttribute
+    OS os;
+    @XmlValue
+    String args;
+
+    public JvmArgs() {
+    }
+
+    JvmArgs(OS os, String args) {
+        this.os = os;
+        this.args = args;
+    }
+
+    boolean appliesToCurrentPlatform() {
+        return os == null || os == OS.current;
+    }
+
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        JvmArgs that = (JvmArgs) o;
+
+        if (os != that.os) return false;
+        return args != null ? args.equals(that.args) : that.args == null;
+    }
+
+    public int hashCode() {
+        int result = os != null ? os.hashCode() : 0;
+        result = 31 * result + (args != null ? args.hashCode() : 0);
+        return result;
+    }
+}
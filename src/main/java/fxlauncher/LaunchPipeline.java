@@ -0,0 +1,81 @@
+package fxlauncher;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the stages of a launch on a small pool of daemon threads, so stages that don't depend on each other
+ * overlap. Stages are chained with the usual {@link CompletableFuture} operators, and the duration of every
+ * stage is logged when the pipeline is done.
+ */
+class LaunchPipeline {
+    private static final Logger log = Logger.getLogger("LaunchPipeline");
+
+    interface Stage<T> {
+        T run() throws Exception;
+    }
+
+    private final long start = System.nanoTime();
+    private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "FXLauncher-Pipeline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Start a stage now. Use <code>thenCompose</code> to start it after the stages it depends on.
+     */
+    <T> CompletableFuture<T> stage(String name, Stage<T> stage) {
+        return CompletableFuture.supplyAsync(() -> {
+            long begin = System.nanoTime();
+            try {
+                return stage.run();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                timings.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+            }
+        }, executor);
+    }
+
+    /**
+     * Wait for a stage and return its result, rethrowing the original exception if it failed.
+     */
+    static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    static Exception unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null)
+            error = error.getCause();
+        if (error instanceof Exception) return (Exception) error;
+        if (error instanceof Error) throw (Error) error;
+        return new Exception(error);
+    }
+
+    /**
+     * Log the stage timings and release the threads.
+     */
+    void finish() {
+        executor.shutdown();
+        String stages;
+        synchronized (timings) {
+            stages = timings.entrySet().stream().map(e -> String.format("%s=%d ms", e.getKey(), e.getValue())).collect(Collectors.joining(" "));
+        }
+        log.info(String.format("Launch pipeline: %s, total %d ms", stages, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+}
@@ -3,23 +3,35 @@ package fxlauncher;
 import com.sun.javafx.application.PlatformImpl;
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
+import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextArea;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
+import javafx.scene.text.TextFlow;
 import javafx.scene.web.WebView;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,6 +45,8 @@ public class Launcher extends Application {
     private UIProvider uiProvider;
     private StackPane root;
     private boolean update = false;
+    private long fxCpuAtStart = -1;
+    private long startNanos;
 
     private final AbstractLauncher superLauncher = new AbstractLauncher<Application>() {
         @Override
@@ -42,7 +56,9 @@ public class Launcher extends Application {
 
         @Override
         protected void updateProgress(double progress) {
-            Platform.runLater(() -> uiProvider.updateProgress(progress));
+            Platform.runLater(() -> {
+                if (stage != null) uiProvider.updateProgress(progress);
+            });
         }
 
         @Override
@@ -84,6 +100,27 @@ public class Launcher extends Application {
             });
         }
 
+        @Override
+        protected void onManifestLoaded() {
+            String animation = new LauncherParams(getParameters(), getManifest()).getNamed().get("spinner-animation");
+            if (animation != null) Platform.runLater(() -> setSpinnerAnimation(animation));
+        }
+
+        @Override
+        protected void onManifestUpdated() {
+            update = true;
+            createUpdateWrapper();
+        }
+
+        @Override
+        protected void onSyncError(Exception error) throws Exception {
+            super.onSyncError(error);
+            if (checkIgnoreUpdateErrorSetting()) {
+                reportError(String.format("Error during %s phase", getPhase()), error);
+                System.exit(1);
+            }
+        }
+
         @Override
         protected void setupClassLoader(ClassLoader classLoader) {
             FXMLLoader.setDefaultClassLoader(classLoader);
@@ -104,17 +141,27 @@ public class Launcher extends Application {
      */
     @Override
     public void init() {
+        // Already checked in main, unless the JavaFX launcher started this class directly
+        if (SingleInstance.forwardToRunningInstance(getParameters().getRaw())) {
+            Platform.exit();
+            return;
+        }
+        Prewarm.start(getParameters().getRaw());
         Iterator<UIProvider> providers = ServiceLoader.load(UIProvider.class).iterator();
         uiProvider = providers.hasNext() ? providers.next() : new UpdateBox();
     }
 
     @Override
     public void start(Stage primaryStage) throws Exception {
+        startNanos = System.nanoTime();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled())
+            fxCpuAtStart = threads.getCurrentThreadCpuTime();
+
         this.primaryStage = primaryStage;
         stage = new Stage(StageStyle.TRANSPARENT);
         root = new StackPane();
         root.getStyleClass().add("container");
-        final boolean[] filesUpdated = new boolean[1];
 
         Scene scene = new Scene(root);
         scene.setFill(Color.TRANSPARENT);
@@ -124,27 +171,16 @@ public class Launcher extends Application {
         superLauncher.checkSSLIgnoreflag();
         this.uiProvider.init(stage, superLauncher.phaseProptery());
         root.getChildren().add(uiProvider.createLoader());
+        setSpinnerAnimation(getParameters().getNamed().get("spinner-animation"));
         stage.show();
+        // Close the splash on the next pulse, when the stage has been painted
+        Platform.runLater(Splash::handOff);
 
         new Thread(() -> {
             Thread.currentThread().setName("FXLauncher-Thread");
             try {
-                update = superLauncher.updateManifest();
-                if (update) {
-                    createUpdateWrapper();
-                }
-                filesUpdated[0] = superLauncher.syncFiles();
-            } catch (Exception ex) {
-                log.log(Level.WARNING, String.format("Error during %s phase", superLauncher.getPhase()), ex);
-                if (superLauncher.checkIgnoreUpdateErrorSetting()) {
-                    superLauncher.reportError(String.format("Error during %s phase", superLauncher.getPhase()), ex);
-                    System.exit(1);
-                }
-            }
-
-            try {
-                superLauncher.createApplicationEnvironment();
-                launchAppFromManifest(filesUpdated[0]);
+                boolean filesUpdated = superLauncher.syncAndPrepare();
+                launchAppFromManifest(filesUpdated);
             } catch (Exception ex) {
                 superLauncher.reportError(String.format("Error during %s phase", superLauncher.getPhase()), ex);
             }
@@ -154,48 +190,141 @@ public class Launcher extends Application {
     private void launchAppFromManifest(boolean showWhatsnew) throws Exception {
         superLauncher.setPhase("正在初始化应用环境");
 
+        // Download the release notes while the application initializes
+        FXManifest manifest = superLauncher.getManifest();
+        boolean useWebView = Boolean.TRUE.equals(manifest.whatsNewWebView);
+        Downloader downloader = superLauncher.getDownloader();
+        CompletableFuture<String> whatsNew = showWhatsnew && manifest.whatsNewPage != null && !useWebView
+                ? CompletableFuture.supplyAsync(() -> fetchWhatsNew(manifest.whatsNewPage, downloader))
+                : CompletableFuture.completedFuture(null);
+
         try {
             initApplication();
         } catch (Throwable ex) {
             superLauncher.reportError("Error during app init", ex);
         }
         superLauncher.setPhase("正在启动中...");
+        String whatsNewContent = awaitWhatsNew(whatsNew, downloader.getConnectTimeout() + downloader.getReadTimeout());
 
         runAndWait(() ->
         {
             try {
-                if (showWhatsnew && superLauncher.getManifest().whatsNewPage != null)
-                    showWhatsNewDialog(superLauncher.getManifest().whatsNewPage);
+                if (showWhatsnew && manifest.whatsNewPage != null) {
+                    if (useWebView)
+                        showWhatsNewDialog(manifest.whatsNewPage);
+                    else if (whatsNewContent != null)
+                        showWhatsNewDialog(WhatsNew.render(whatsNewContent, url -> getHostServices().showDocument(url)));
+                }
 
                 // Lingering update screen will close when primary stage is shown
-                if (superLauncher.getManifest().lingeringUpdateScreen) {
-                    primaryStage.showingProperty().addListener(observable -> {
-                        if (stage.isShowing()) {
-                            stage.close();
+                boolean lingering = superLauncher.getManifest().lingeringUpdateScreen;
+                if (lingering) {
+                    primaryStage.showingProperty().addListener(new InvalidationListener() {
+                        @Override
+                        public void invalidated(Observable observable) {
+                            primaryStage.showingProperty().removeListener(this);
+                            if (stage != null && stage.isShowing()) {
+                                stage.close();
+                            }
+                            releaseUI();
                         }
                     });
                 } else {
                     stage.close();
                 }
 
+                logFxThreadCpu();
                 startApplication();
+                superLauncher.releaseAfterHandoff(lingering ? () -> {} : this::releaseUI);
             } catch (Throwable ex) {
                 superLauncher.reportError("Failed to start application", ex);
             }
         });
     }
 
+    /**
+     * Dispose the launcher UI once it is closed, stopping its animations and letting its scene graph be collected
+     */
+    private void releaseUI() {
+        if (stage == null) return;
+        uiProvider.dispose();
+        root.getChildren().clear();
+        stage.setScene(null);
+        stage = null;
+        root = null;
+    }
+
+    /**
+     * Select the spinner animation (full, rotate or static) for the whole launcher UI. The CSS property is
+     * inherited, so a stylesheet of a custom UIProvider can still override it per spinner.
+     */
+    private void setSpinnerAnimation(String animation) {
+        if (animation != null && !animation.isEmpty())
+            root.setStyle(String.format("-jfx-animation: %s;", animation));
+    }
+
+    /**
+     * Log the CPU time the FX thread used while the launcher UI was showing, mostly rendering the spinner
+     */
+    private void logFxThreadCpu() {
+        if (fxCpuAtStart < 0) return;
+        long cpu = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() - fxCpuAtStart;
+        long wall = System.nanoTime() - startNanos;
+        log.info(String.format("FX thread CPU during sync: %d ms of %d ms (%.1f%%)",
+                TimeUnit.NANOSECONDS.toMillis(cpu), TimeUnit.NANOSECONDS.toMillis(wall), cpu * 100.0 / wall));
+    }
+
+    private String fetchWhatsNew(String url, Downloader downloader) {
+        try {
+            return WhatsNew.fetch(url, downloader.getConnectTimeout(), downloader.getReadTimeout());
+        } catch (Exception ex) {
+            log.log(Level.WARNING, String.format("Unable to load what's new from %s", url), ex);
+            return null;
+        }
+    }
+
+    /**
+     * The release notes, or null if they didn't arrive in time. A slow server must not hold up the start.
+     */
+    private String awaitWhatsNew(CompletableFuture<String> whatsNew, long timeoutMillis) {
+        try {
+            return whatsNew.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            log.warning(String.format("What's new didn't load within %d ms, skipping it", timeoutMillis));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            log.log(Level.WARNING, "Unable to load what's new", ex);
+        }
+        return null;
+    }
+
     private void showWhatsNewDialog(String whatsNewURL) {
+        // WebView is only loaded when the manifest asks for it
         WebView view = new WebView();
         view.getEngine().load(whatsNewURL);
+        showWhatsNewDialog(view);
+    }
+
+    private void showWhatsNewDialog(Node content) {
+        if (content instanceof TextFlow) {
+            ScrollPane scroll = new ScrollPane(content);
+            scroll.setFitToWidth(true);
+            scroll.setPrefSize(600, 400);
+            ((TextFlow) content).setPadding(new Insets(10));
+            content = scroll;
+        }
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("What's new");
         alert.setHeaderText("New in this update");
-        alert.getDialogPane().setContent(view);
+        alert.getDialogPane().setContent(content);
         alert.showAndWait();
     }
 
     public static void main(String[] args) {
+        if (SingleInstance.forwardToRunningInstance(Arrays.asList(args))) return;
+        Splash.show(args);
+        Prewarm.start(Arrays.asList(args));
         launch(args);
     }
 
@@ -230,19 +359,20 @@ public class Launcher extends Application {
                 app.getParameters().getRaw().addAll(params.getRaw());
                 app.getParameters().getUnnamed().addAll(params.getUnnamed());
             }
-            primaryStage.setUserData(new UpdateInfo(superLauncher.getManifest().getWhatNew(), superLauncher.getManifest().getVersion(), update));
+            primaryStage.setUserData(new UpdateInfo(superLauncher.getManifest().getWhatNew(), superLauncher.getManifest().getVersion(), update,
+                    superLauncher.getUpdateService()));
             log.info(primaryStage.getUserData().toString());
             PlatformImpl.setApplicationName(app.getClass());
             superLauncher.setPhase("应用初始化完成");
             app.start(primaryStage);
         } else {
-            // Start any executable jar (i.E. Spring Boot);
-            String firstFile = superLauncher.getManifest().files.get(0).file;
-            log.info(String.format("No app class defined, starting first file (%s)", firstFile));
+            // Start any executable jar (i.E. Spring Boot) in its own JVM
             Path cacheDir = superLauncher.getManifest().resolveCacheDir(getParameters().getNamed());
-            String command = String.format("java -jar %s/%s", cacheDir.toAbsolutePath(), firstFile);
-            log.info(String.format("Execute command '%s'", command));
-            Runtime.getRuntime().exec(command);
+            LauncherParams params = new LauncherParams(getParameters(), superLauncher.getManifest());
+            Process process = AppProcess.start(superLauncher.getManifest(), cacheDir, AppProcess.appArgs(params.getRaw()));
+            // The instance lock and the registration of the files in use belong to this JVM, so it has to stay
+            // until the application exits. Otherwise the cache cleaner and Prefetch would think it isn't running.
+            AppProcess.exitWith(process);
         }
     }
 
@@ -1,30 +1,87 @@
 package fxlauncher;
 
+import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlAttribute;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.Adler32;
 
 public class LibraryFile {
     @XmlAttribute
     String file;
     @XmlAttribute
-    Long checksum;
+    String checksum;
     @XmlAttribute
     Long size;
 	@XmlAttribute
 	OS os;
+    /**
+     * Only present when this file uses a different algorithm than the manifest
+     */
+    @XmlAttribute
+    ChecksumAlgorithm checksumAlgorithm;
+    /**
+     * The bundle chunk containing this file, if bundles were created
+     */
+    @XmlAttribute
+    String bundle;
+    /**
+     * The content addressed copy of the file relative to the manifest uri, if CreateManifest published one
+     */
+    @XmlAttribute
+    String object;
+    /**
+     * The optional component this file belongs to, or null for the files the application needs to start.
+     * See {@link Components}.
+     */
+    @XmlAttribute
+    String component;
+    /**
+     * Modification time of the file when the manifest was created, used by incremental manifest creation
+     */
+    @XmlAttribute
+    Long modified;
+
+    /**
+     * The algorithm of the enclosing manifest, set when the manifest is unmarshalled
+     */
+    ChecksumAlgorithm manifestAlgorithm;
+
+    /**
+     * The path to download this file from, relative to the manifest uri. The content addressed object if there is
+     * one, otherwise the file itself.
+     */
+    String remotePath() {
+        return object != null ? object : file;
+    }
+
+    /**
+     * True if the remote path never changes its content, so caches between here and the server may answer
+     */
+    boolean isImmutable() {
+        return object != null;
+    }
 
     public boolean needsUpdate(Path cacheDir) {
         Path path = cacheDir.resolve(file);
         try {
-            return !Files.exists(path) || Files.size(path) != size || checksum(path) != checksum;
+            return !Files.exists(path) || Files.size(path) != size || !checksum.equals(checksum(path));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Cheap check for files known to be current, true if the file is missing or has the wrong size
+     */
+    boolean sizeDiffers(Path cacheDir) {
+        Path path = cacheDir.resolve(file);
+        try {
+            return !Files.exists(path) || Files.size(path) != size;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -34,9 +91,22 @@ public class LibraryFile {
     }
 
 	public LibraryFile(Path basepath, Path file) throws IOException {
+        this(basepath, file, ChecksumAlgorithm.DEFAULT);
+    }
+
+	public LibraryFile(Path basepath, Path file, ChecksumAlgorithm algorithm) throws IOException {
+        this(basepath, file, algorithm, null);
+    }
+
+    /**
+     * @param knownChecksum the checksum from a previous manifest if the file is unchanged, or null to compute it
+     */
+	LibraryFile(Path basepath, Path file, ChecksumAlgorithm algorithm, String knownChecksum) throws IOException {
         this.file = basepath.relativize(file).toString().replace("\\", "/");
         this.size = Files.size(file);
-        this.checksum = checksum(file);
+        this.modified = Files.getLastModifiedTime(file).toMillis();
+        this.manifestAlgorithm = algorithm;
+        this.checksum = knownChecksum != null ? knownChecksum : checksum(file);
 
 	    String filename = file.getFileName().toString().toLowerCase();
         Pattern osPattern = Pattern.compile(".+-(linux|win|mac)\\.[^.]+$");
@@ -58,6 +128,14 @@ public class LibraryFile {
 		return os == null || os == OS.current;
 	}
 
+    /**
+     * True if the file is synced at startup and on the class path of the application, false for a file of an
+     * optional component
+     */
+    public boolean isCore() {
+        return component == null;
+    }
+
     public URL toURL(Path cacheDir) {
         try {
             return cacheDir.resolve(file).toFile().toURI().toURL();
@@ -66,17 +144,28 @@ public class LibraryFile {
         }
     }
 
-    private static long checksum(Path path) throws IOException {
-        try (InputStream input = Files.newInputStream(path)) {
-            Adler32 checksum = new Adler32();
-            byte[] buf = new byte[16384];
+    /**
+     * True if the file still has the size and modification time recorded in this entry, so the checksum can be
+     * reused when the manifest is created again with the same algorithm.
+     */
+    boolean isUnchanged(Path file, ChecksumAlgorithm algorithm) throws IOException {
+        return modified != null && algorithm() == algorithm
+                && Files.size(file) == size && Files.getLastModifiedTime(file).toMillis() == modified;
+    }
+
+    ChecksumAlgorithm algorithm() {
+        if (checksumAlgorithm != null) return checksumAlgorithm;
+        return manifestAlgorithm != null ? manifestAlgorithm : ChecksumAlgorithm.DEFAULT;
+    }
 
-            int read;
-            while ((read = input.read(buf)) > -1)
-                checksum.update(buf, 0, read);
+    private String checksum(Path path) throws IOException {
+        return algorithm().checksum(path);
+    }
 
-            return checksum.getValue();
-        }
+    @SuppressWarnings("unused")
+    private void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
+        if (parent instanceof FXManifest)
+            manifestAlgorithm = ((FXManifest) parent).checksumAlgorithm;
     }
 
     public boolean equals(Object o) {
@@ -0,0 +1,202 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The ordered list of repositories a manifest can be synced from: the manifest uri followed by any
+ * <code>mirror</code> elements.
+ * <p>
+ * When there is more than one candidate, every mirror gets a quick parallel HEAD probe for app.xml and the
+ * healthy ones are ordered by latency. Failures are counted per mirror and remembered in
+ * <code>mirrors.properties</code> in the cache dir, so a mirror that keeps failing is tried last on the
+ * next launches until its quarantine expires.
+ */
+class Mirrors {
+    private static final Logger log = Logger.getLogger("Mirrors");
+
+    private static final String HEALTH_FILE = "mirrors.properties";
+    private static final int PROBE_TIMEOUT = 2000;
+    private static final int QUARANTINE_FAILURES = 3;
+    private static final long QUARANTINE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final long BACKOFF_MILLIS = 250;
+    private static final long MAX_BACKOFF_MILLIS = 4000;
+
+    private final List<URI> candidates;
+    private final Path healthFile;
+    private final Properties health = new Properties();
+    private final Map<URI, Long> latencies = new ConcurrentHashMap<>();
+    private volatile List<URI> ordered;
+
+    Mirrors(List<URI> candidates, Path cacheDir) {
+        this.candidates = Collections.unmodifiableList(new ArrayList<>(candidates));
+        this.healthFile = cacheDir.resolve(HEALTH_FILE);
+        this.ordered = this.candidates;
+
+        if (candidates.size() > 1 && Files.exists(healthFile)) {
+            try (InputStream input = Files.newInputStream(healthFile)) {
+                health.load(input);
+            } catch (IOException e) {
+                log.log(Level.FINE, "Unable to read mirror health", e);
+            }
+        }
+    }
+
+    List<URI> getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * Probe all mirrors that are not in quarantine in parallel and order them by latency. Mirrors that
+     * could not be reached and quarantined mirrors go last, so there is always something to try.
+     */
+    void probe() {
+        if (candidates.size() < 2) return;
+
+        ExecutorService executor = Executors.newFixedThreadPool(candidates.size(), runnable -> {
+            Thread thread = new Thread(runnable, "FXLauncher-MirrorProbe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Callable<Void>> probes = new ArrayList<>();
+            for (URI mirror : candidates) {
+                if (isQuarantined(mirror)) continue;
+                probes.add(() -> {
+                    probe(mirror);
+                    return null;
+                });
+            }
+            executor.invokeAll(probes, PROBE_TIMEOUT * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<URI> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparing((URI mirror) -> latencies.getOrDefault(mirror, Long.MAX_VALUE)));
+        ordered = Collections.unmodifiableList(sorted);
+        log.info(String.format("Mirror latencies %s, using %s", latencies, ordered.get(0)));
+        save();
+    }
+
+    private void probe(URI mirror) {
+        URI app = Connections.resolve(mirror, "app.xml");
+        long start = System.nanoTime();
+        try {
+            if ("file".equals(app.getScheme())) {
+                if (!Files.exists(Paths.get(app.getPath()))) throw new IOException(String.format("%s not found", app));
+            } else {
+                URLConnection connection = Connections.open(app);
+                connection.setConnectTimeout(PROBE_TIMEOUT);
+                connection.setReadTimeout(PROBE_TIMEOUT);
+                if (connection instanceof HttpURLConnection) {
+                    HttpURLConnection http = (HttpURLConnection) connection;
+                    http.setRequestMethod("HEAD");
+                    int status = http.getResponseCode();
+                    if (status >= 400) throw new IOException(String.format("HTTP %d from %s", status, app));
+                } else {
+                    connection.getInputStream().close();
+                }
+            }
+            latencies.put(mirror, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            recordSuccess(mirror);
+        } catch (IOException e) {
+            log.info(String.format("Mirror %s failed probe: %s", mirror, e.getMessage()));
+            recordFailure(mirror);
+        }
+    }
+
+    /**
+     * The mirrors to try for the manifest, fastest first.
+     */
+    List<URI> ordered() {
+        return ordered;
+    }
+
+    /**
+     * The mirrors to try for the n-th file. Files are spread round robin over the healthy mirrors, with the
+     * remaining mirrors kept as fallbacks.
+     */
+    List<URI> forFile(int index) {
+        List<URI> healthy = new ArrayList<>();
+        List<URI> rest = new ArrayList<>();
+        for (URI mirror : ordered) {
+            if (isQuarantined(mirror) || (!latencies.isEmpty() && !latencies.containsKey(mirror)))
+                rest.add(mirror);
+            else
+                healthy.add(mirror);
+        }
+        if (!healthy.isEmpty())
+            Collections.rotate(healthy, -(index % healthy.size()));
+        healthy.addAll(rest);
+        return healthy;
+    }
+
+    synchronized void recordSuccess(URI mirror) {
+        health.remove(mirror.toString());
+    }
+
+    synchronized void recordFailure(URI mirror) {
+        latencies.remove(mirror);
+        int failures = failures(mirror) + 1;
+        health.setProperty(mirror.toString(), String.format("%d,%d", failures, System.currentTimeMillis()));
+    }
+
+    private synchronized boolean isQuarantined(URI mirror) {
+        long[] entry = entry(mirror);
+        return entry != null && entry[0] >= QUARANTINE_FAILURES
+                && System.currentTimeMillis() - entry[1] < QUARANTINE_MILLIS;
+    }
+
+    private synchronized int failures(URI mirror) {
+        long[] entry = entry(mirror);
+        return entry == null ? 0 : (int) entry[0];
+    }
+
+    /**
+     * The failure count and time of the last failure of a mirror, or null if it is healthy. Entries that
+     * can't be parsed, for example from an edited or truncated health file, are dropped.
+     */
+    private synchronized long[] entry(URI mirror) {
+        String value = health.getProperty(mirror.toString());
+        if (value == null) return null;
+        String[] parts = value.split(",");
+        try {
+            if (parts.length == 2)
+                return new long[]{Integer.parseInt(parts[0].trim()), Long.parseLong(parts[1].trim())};
+        } catch (NumberFormatException ignored) {
+        }
+        log.fine(String.format("Ignoring malformed health of %s: %s", mirror, value));
+        health.remove(mirror.toString());
+        return null;
+    }
+
+    synchronized void save() {
+        if (candidates.size() < 2) return;
+        try (OutputStream output = Files.newOutputStream(healthFile)) {
+            health.store(output, "FXLauncher mirror health");
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to store mirror health", e);
+        }
+    }
+
+    /**
+     * Sleep before the next attempt, doubling the delay for every failed attempt.
+     */
+    static void backoff(int attempt) throws InterruptedException {
+        Thread.sleep(Math.min(MAX_BACKOFF_MILLIS, BACKOFF_MILLIS << Math.min(attempt, 10)));
+    }
+}
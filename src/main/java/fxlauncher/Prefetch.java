@@ -0,0 +1,105 @@
+package fxlauncher;
+
+import javax.xml.bind.JAXB;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Downloads updates into the cache dir without starting the application, for scheduled runs at night so the next
+ * start has nothing left to download. Run it with the launcher jar of the installed application, which carries the
+ * embedded manifest:
+ *
+ * <pre>
+ * java -classpath fxlauncher.jar fxlauncher.Prefetch --max-bandwidth=500000
+ * </pre>
+ * <p>
+ * The check interval of the manifest doesn't apply. If the application is running from the cache dir, the
+ * update is staged like the {@link UpdateService} does and applied on the next start, otherwise the files are
+ * synced into the cache dir directly. An application in a child JVM counts as running, because its launcher waits
+ * for it. The exit status is {@link #OK}, {@link #FAILED} or {@link #SERVER_BUSY}.
+ */
+public class Prefetch extends HeadlessMainLauncher {
+    private static final Logger log = Logger.getLogger("Prefetch");
+
+    /**
+     * The cache dir or the staged update has the latest version
+     */
+    public static final int OK = 0;
+    /**
+     * The manifest or files could not be downloaded
+     */
+    public static final int FAILED = 1;
+    /**
+     * The server asked to come back later, run again after the time in the log
+     */
+    public static final int SERVER_BUSY = 2;
+
+    public Prefetch(LauncherParams parameters) {
+        super(parameters);
+    }
+
+    public static void main(String[] args) {
+        List<String> mainArgs = new ArrayList<>(Arrays.asList(args));
+        if (!mainArgs.contains("--force-check")) mainArgs.add("--force-check");
+        // Threads created for the downloads inherit the priority
+        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+        System.exit(new Prefetch(new LauncherParams(mainArgs)).prefetch());
+    }
+
+    int prefetch() {
+        try {
+            URL embedded = AbstractLauncher.class.getResource("/app.xml");
+            if (embedded == null)
+                throw new IllegalStateException("No embedded app.xml, run Prefetch with the launcher jar of the application");
+            FXManifest embeddedManifest = JAXB.unmarshal(embedded, FXManifest.class);
+            Path cacheDir = embeddedManifest.resolveCacheDir(new LauncherParams(getParameters(), embeddedManifest).getNamed());
+            boolean appRunning = CacheCleaner.hasLiveInstances(cacheDir);
+            return appRunning ? stage(embeddedManifest, cacheDir) : sync();
+        } catch (Exception e) {
+            Throwable cause = LaunchPipeline.unwrap(e);
+            if (cause instanceof Downloader.ServerBusyException) {
+                log.warning(String.format("Prefetch postponed: %s", cause.getMessage()));
+                return SERVER_BUSY;
+            }
+            log.log(Level.SEVERE, "Prefetch failed", cause);
+            return FAILED;
+        } finally {
+            unlockCacheDir();
+        }
+    }
+
+    private int sync() throws Exception {
+        boolean manifestUpdated = loadManifest();
+        if (getManifestCheckFailure() != null) throw getManifestCheckFailure();
+        boolean filesUpdated = syncFiles();
+        log.info(manifestUpdated || filesUpdated
+                ? String.format("Prefetched version %s", getManifest().version)
+                : String.format("Version %s is up to date", getManifest().version));
+        return OK;
+    }
+
+    /**
+     * Stage the update next to the files of the running application, which are never touched
+     */
+    private int stage(FXManifest embeddedManifest, Path cacheDir) throws Exception {
+        lockCacheDir(cacheDir);
+        // The cache only has a manifest once it was updated past the embedded one
+        Path cached = embeddedManifest.getPath(cacheDir);
+        manifest = Files.exists(cached) ? JAXB.unmarshal(cached.toFile(), FXManifest.class) : embeddedManifest;
+        setupLogFile();
+        checkSSLIgnoreflag();
+        log.info(String.format("The application is running from %s, staging the update for its next start", cacheDir));
+
+        FXManifest staged = stageUpdate(cacheDir, null, this::updateProgress);
+        log.info(staged != null
+                ? String.format("Staged version %s", staged.version)
+                : String.format("Version %s is up to date", manifest.version));
+        return OK;
+    }
+}
@@ -0,0 +1,138 @@
+package fxlauncher;
+
+import javax.xml.bind.JAXB;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static fxlauncher.Strings.ensureEndingSlash;
+
+/**
+ * Resolves and connects to the update hosts while the JavaFX toolkit starts, so DNS and the TLS handshake are no
+ * longer on the critical path of the manifest check.
+ * <p>
+ * The uri and mirrors come from the cached manifest, or the embedded one on a first start. A single host gets a
+ * HEAD request for app.xml on a daemon thread, and the JDK keeps the finished connection in its keep-alive cache,
+ * where the manifest request picks it up if it is ready by then. With mirrors, the {@link Mirrors} probe, which
+ * sends the same requests, runs now instead of after the toolkit started, and the launcher uses its result. Nothing
+ * is sent with <code>--offline</code>, while the cached manifest is within its check interval or while the server
+ * asked not to be contacted.
+ */
+final class Prewarm {
+    private static final Logger log = Logger.getLogger("Prewarm");
+    private static final int TIMEOUT = 5000;
+
+    private static CompletableFuture<Void> warming;
+    private static volatile Mirrors mirrors;
+
+    private Prewarm() {
+    }
+
+    /**
+     * Start warming the connections. Called from main and again from init, in case main was bypassed.
+     */
+    static synchronized void start(List<String> args) {
+        if (warming != null) return;
+        warming = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                warm(args);
+            } catch (Exception e) {
+                log.log(Level.FINE, "Unable to warm connections", e);
+            } finally {
+                warming.complete(null);
+            }
+        }, "FXLauncher-Prewarm");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The mirrors probed while the toolkit started, if they are the given candidates. Waits for a probe that is
+     * still running, which is bounded by its own timeouts and would otherwise have to be repeated.
+     *
+     * @return the probed mirrors, or null if they have to be probed
+     */
+    static Mirrors probedMirrors(List<URI> candidates) {
+        Mirrors early = mirrors;
+        if (early == null || !early.getCandidates().equals(candidates)) return null;
+        CompletableFuture<Void> pending;
+        synchronized (Prewarm.class) {
+            pending = warming;
+        }
+        pending.join();
+        // Only used once, a later manifest with the same mirrors is probed again
+        mirrors = null;
+        return early;
+    }
+
+    private static void warm(List<String> args) throws Exception {
+        URL embedded = Prewarm.class.getResource("/app.xml");
+        if (embedded == null) return;
+        FXManifest manifest = JAXB.unmarshal(embedded, FXManifest.class);
+        LauncherParams params = new LauncherParams(new LauncherParams(args), manifest);
+        if (params.getUnnamed().contains("--offline")) return;
+
+        List<URI> hosts;
+        Path cacheDir = manifest.resolveCacheDir(params.getNamed());
+        if (params.getNamed().containsKey("uri")) {
+            hosts = Collections.singletonList(URI.create(ensureEndingSlash(params.getNamed().get("uri"))));
+        } else {
+            Path cached = manifest.getPath(cacheDir);
+            if (Files.exists(cached)) {
+                manifest = JAXB.unmarshal(cached.toFile(), FXManifest.class);
+                if (!params.getUnnamed().contains("--force-check") && AbstractLauncher.withinCheckInterval(manifest, cacheDir))
+                    return;
+            }
+            if (Rollout.retryAt(cacheDir) > System.currentTimeMillis()) return;
+            hosts = manifest.getMirrorURIs();
+        }
+
+        boolean ignoreSsl = params.getUnnamed().contains("--ignoressl");
+        if (hosts.size() > 1 && !ignoreSsl) {
+            Mirrors early = new Mirrors(hosts, cacheDir);
+            mirrors = early;
+            early.probe();
+            return;
+        }
+        CompletableFuture<?>[] warmed = hosts.stream()
+                .map(host -> CompletableFuture.runAsync(() -> warm(host, ignoreSsl)))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(warmed).join();
+    }
+
+    private static void warm(URI base, boolean ignoreSsl) {
+        String scheme = base.getScheme();
+        if (!Objects.equals(scheme, "http") && !Objects.equals(scheme, "https")) return;
+        long start = System.nanoTime();
+        try {
+            InetAddress.getAllByName(base.getHost());
+            // The handshake has to wait for the trust manager installed for --ignoressl
+            if (ignoreSsl && scheme.equals("https")) return;
+
+            URLConnection connection = Connections.open(Connections.resolve(base, "app.xml"));
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            if (connection instanceof HttpURLConnection) {
+                HttpURLConnection http = (HttpURLConnection) connection;
+                http.setRequestMethod("HEAD");
+                // A HEAD response has no body, so the connection goes straight back to the keep-alive cache
+                http.getResponseCode();
+            }
+            log.info(String.format("Warmed connection to %s in %d ms", base.getHost(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        } catch (Exception e) {
+            log.log(Level.FINE, String.format("Unable to warm connection to %s", base.getHost()), e);
+        }
+    }
+}
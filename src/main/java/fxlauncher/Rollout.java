@@ -0,0 +1,78 @@
+package fxlauncher;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Spreads the load of a release on the server over time.
+ * <p>
+ * Every installation gets a random id in <code>.fxlauncher.installation</code> in the cache dir, which puts it in
+ * a stable bucket between 0 and 99. A manifest with a <code>rolloutPercentage</code> is only taken by the
+ * installations in a lower bucket, so raising the percentage adds installations without reshuffling the ones
+ * that already have the release. First installs always take the current manifest.
+ * <p>
+ * When every mirror answers 503 or 429 with a <code>Retry-After</code>, the time is remembered in
+ * <code>.fxlauncher.retry-after</code>, and until then the launcher starts from the cache without asking again.
+ */
+final class Rollout {
+    private static final Logger log = Logger.getLogger("Rollout");
+
+    private static final String INSTALLATION_FILE = ".fxlauncher.installation";
+    private static final String RETRY_AFTER_FILE = ".fxlauncher.retry-after";
+
+    private Rollout() {
+    }
+
+    /**
+     * True if this installation is part of the rollout of the manifest
+     */
+    static boolean includes(FXManifest manifest, Path cacheDir) {
+        Integer percentage = manifest.rolloutPercentage;
+        if (percentage == null || percentage >= 100) return true;
+        return bucket(cacheDir) < percentage;
+    }
+
+    static int bucket(Path cacheDir) {
+        Path file = cacheDir.resolve(INSTALLATION_FILE);
+        UUID id;
+        try {
+            if (Files.exists(file)) {
+                id = UUID.fromString(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+            } else {
+                id = UUID.randomUUID();
+                Files.createDirectories(cacheDir);
+                Files.write(file, id.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // Without a stable id, this installation is simply treated as one of the last to update
+            log.log(Level.FINE, "Unable to read or store the installation id", e);
+            return 99;
+        }
+        return (int) Math.floorMod(id.getLeastSignificantBits(), 100L);
+    }
+
+    /**
+     * The time before which the server asked not to be contacted, or 0
+     */
+    static long retryAt(Path cacheDir) {
+        Path file = cacheDir.resolve(RETRY_AFTER_FILE);
+        try {
+            return Files.exists(file) ? Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static void retryAt(Path cacheDir, long time) {
+        try {
+            Files.write(cacheDir.resolve(RETRY_AFTER_FILE), String.valueOf(time).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.log(Level.FINE, "Unable to store the retry time", e);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package fxlauncher;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a second launch of the application from starting another JVM, enabled with <code>--single-instance=true</code>
+ * on the command line or in the manifest parameters.
+ * <p>
+ * The first launcher holds a lock on <code>.fxlauncher.instance</code> in the cache dir and listens on a loopback
+ * port, which it writes to <code>.fxlauncher.instance.port</code> together with a random token. A second launch
+ * finds the lock taken, sends its command line arguments to that port and exits before the JavaFX toolkit starts.
+ * The running application receives them through a {@link Listener}, on a background thread:
+ *
+ * <pre>
+ * SingleInstance.addListener(args -&gt; Platform.runLater(() -&gt; {
+ *     primaryStage.toFront();
+ *     openFiles(args);
+ * }));
+ * </pre>
+ * <p>
+ * Arguments that arrive before a listener is added are kept and passed to the first one. If the running instance
+ * can't be reached, the second launch starts normally.
+ */
+public final class SingleInstance {
+    private static final Logger log = Logger.getLogger("SingleInstance");
+
+    private static final String LOCK_FILE = ".fxlauncher.instance";
+    private static final String PORT_FILE = ".fxlauncher.instance.port";
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final int PORT_FILE_ATTEMPTS = 20;
+
+    public interface Listener {
+        /**
+         * The application was launched again with these arguments
+         */
+        void newInstance(List<String> args);
+    }
+
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static final List<List<String>> pending = new ArrayList<>();
+
+    private static boolean checked;
+    // Held until the JVM exits
+    private static FileLock lock;
+    private static ServerSocket server;
+
+    private SingleInstance() {
+    }
+
+    public static void addListener(Listener listener) {
+        List<List<String>> missed;
+        synchronized (pending) {
+            listeners.add(listener);
+            missed = new ArrayList<>(pending);
+            pending.clear();
+        }
+        missed.forEach(listener::newInstance);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * True if this application is running in single instance mode and owns the instance lock
+     */
+    public static synchronized boolean isPrimary() {
+        return lock != null;
+    }
+
+    /**
+     * Hand the arguments to the running instance if single instance mode is enabled and one is running, or become
+     * the running instance. Called from main and again from init, in case main was bypassed.
+     *
+     * @return true if the arguments were forwarded and this launch should exit
+     */
+    static synchronized boolean forwardToRunningInstance(List<String> args) {
+        if (checked) return false;
+        checked = true;
+
+        URL embedded = SingleInstance.class.getResource("/app.xml");
+        if (embedded == null) return false;
+        FXManifest manifest;
+        try {
+            manifest = readSettings(embedded);
+        } catch (IOException | XMLStreamException e) {
+            log.log(Level.WARNING, "Unable to read the embedded manifest", e);
+            return false;
+        }
+        LauncherParams params = new LauncherParams(new LauncherParams(args), manifest);
+        if (!Boolean.parseBoolean(params.getNamed().get("single-instance"))) return false;
+
+        Path cacheDir = manifest.resolveCacheDir(params.getNamed());
+        try {
+            Files.createDirectories(cacheDir);
+            FileChannel channel = FileChannel.open(cacheDir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock acquired = channel.tryLock();
+            if (acquired != null) {
+                lock = acquired;
+                listen(cacheDir);
+                return false;
+            }
+            channel.close();
+            return forward(cacheDir, args);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Single instance check failed, starting normally", e);
+            return false;
+        }
+    }
+
+    /**
+     * Only the cache dir and parameters of the manifest, read without the startup cost of JAXB so a second launch
+     * exits quickly
+     */
+    private static FXManifest readSettings(URL embedded) throws IOException, XMLStreamException {
+        FXManifest manifest = new FXManifest();
+        try (InputStream input = embedded.openStream()) {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(input);
+            // Only direct children of the root, a lib could have an element of the same name
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) depth--;
+                if (event != XMLStreamConstants.START_ELEMENT) continue;
+                if (++depth != 2) continue;
+                if (reader.getLocalName().equals("cacheDir")) {
+                    manifest.cacheDir = reader.getElementText();
+                    depth--;
+                } else if (reader.getLocalName().equals("parameters")) {
+                    manifest.parameters = reader.getElementText();
+                    depth--;
+                }
+            }
+            reader.close();
+        }
+        return manifest;
+    }
+
+    private static void listen(Path cacheDir) throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        String token = UUID.randomUUID().toString();
+
+        // Only the user running the application may read the token
+        Path part = cacheDir.resolve(PORT_FILE + ".part");
+        Files.write(part, String.format("%d %s", server.getLocalPort(), token).getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.setPosixFilePermissions(part, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException ignored) {
+        }
+        Files.move(part, cacheDir.resolve(PORT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Thread thread = new Thread(() -> accept(token), "FXLauncher-SingleInstance");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void accept(String token) {
+        byte[] expected = token.getBytes(StandardCharsets.UTF_8);
+        while (!server.isClosed()) {
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(CONNECT_TIMEOUT);
+                DataInputStream input = new DataInputStream(socket.getInputStream());
+                if (!MessageDigest.isEqual(expected, input.readUTF().getBytes(StandardCharsets.UTF_8))) {
+                    log.warning("Ignoring a connection with the wrong instance token");
+                    continue;
+                }
+                int count = input.readInt();
+                List<String> args = new ArrayList<>();
+                for (int i = 0; i < count; i++) args.add(input.readUTF());
+                socket.getOutputStream().write(1);
+                deliver(args);
+            } catch (IOException e) {
+                log.log(Level.FINE, "Unable to receive arguments of a second launch", e);
+            }
+        }
+    }
+
+    private static void deliver(List<String> args) {
+        log.info(String.format("Launched again with %s", args));
+        synchronized (pending) {
+            if (listeners.isEmpty()) {
+                pending.add(args);
+                return;
+            }
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.newInstance(args);
+            } catch (Exception e) {
+                log.log(Level.WARNING, "Single instance listener failed", e);
+            }
+        }
+    }
+
+    private static boolean forward(Path cacheDir, List<String> args) {
+        Path portFile = cacheDir.resolve(PORT_FILE);
+        for (int attempt = 0; attempt < PORT_FILE_ATTEMPTS; attempt++) {
+            try {
+                // The running instance writes the port right after taking the lock
+                String[] content = new String(Files.readAllBytes(portFile), StandardCharsets.UTF_8).trim().split(" ");
+                try (Socket socket = new Socket()) {
+                    socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(content[0])), CONNECT_TIMEOUT);
+                    socket.setSoTimeout(CONNECT_TIMEOUT);
+                    DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+                    output.writeUTF(content[1]);
+                    output.writeInt(args.size());
+                    for (String arg : args) output.writeUTF(arg);
+                    output.flush();
+                    if (socket.getInputStream().read() == 1) {
+                        log.info("Application is already running, forwarded the arguments to it");
+                        return true;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.log(Level.FINE, "Running instance not reachable yet", e);
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        log.warning("Unable to reach the running instance, starting normally");
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+package fxlauncher;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A static splash image shown before the JavaFX toolkit is initialized, and closed as soon as the
+ * {@link UIProvider} stage is on screen.
+ * <p>
+ * The image is taken from the JVM splash screen (<code>-splash:</code> or <code>SplashScreen-Image</code> in the
+ * jar manifest), which is shown before any code runs. Otherwise <code>--splash=</code> names an image file, or
+ * <code>/splash.png</code> is looked up in the launcher jar, and it is shown in an undecorated AWT window.
+ * The time to the first pixel of the splash and of the launcher stage are logged.
+ */
+class Splash {
+    private static final Logger log = Logger.getLogger("Splash");
+
+    private static Window window;
+    private static long splashShown = -1;
+
+    /**
+     * Show the splash. Called from main before the JavaFX toolkit is launched.
+     */
+    static void show(String[] args) {
+        if (GraphicsEnvironment.isHeadless()) return;
+        try {
+            if (SplashScreen.getSplashScreen() != null) {
+                // Already on screen, so this is an upper bound
+                splashShown = System.currentTimeMillis();
+                return;
+            }
+            // AWT must not be initialized before JavaFX on macOS, use -splash: there
+            if (OS.current == OS.mac) return;
+
+            BufferedImage image = loadImage(new LauncherParams(Arrays.asList(args)).getNamed().get("splash"));
+            if (image == null) return;
+
+            window = new Window(null) {
+                @Override
+                public void paint(Graphics g) {
+                    g.drawImage(image, 0, 0, null);
+                }
+            };
+            window.setSize(image.getWidth(), image.getHeight());
+            window.setLocationRelativeTo(null);
+            window.setVisible(true);
+            splashShown = System.currentTimeMillis();
+        } catch (Exception | LinkageError e) {
+            log.log(Level.FINE, "Unable to show splash", e);
+        }
+    }
+
+    private static BufferedImage loadImage(String path) throws IOException {
+        if (path != null) {
+            Path file = Paths.get(path);
+            if (!Files.exists(file)) {
+                log.warning(String.format("Splash image %s not found", path));
+                return null;
+            }
+            try (InputStream input = Files.newInputStream(file)) {
+                return ImageIO.read(input);
+            }
+        }
+        URL embedded = Splash.class.getResource("/splash.png");
+        return embedded != null ? ImageIO.read(embedded) : null;
+    }
+
+    /**
+     * Close the splash now that the launcher stage is showing, and log the time to first pixel.
+     */
+    static void handOff() {
+        // Resolved only now, so the management classes aren't loaded before the splash is up
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        long stageShown = System.currentTimeMillis() - jvmStart;
+        if (splashShown >= 0)
+            log.info(String.format("Time to first pixel: splash %d ms, launcher stage %d ms after JVM start", splashShown - jvmStart, stageShown));
+        else
+            log.info(String.format("Time to first pixel: launcher stage %d ms after JVM start", stageShown));
+
+        if (window != null) {
+            Window splash = window;
+            window = null;
+            EventQueue.invokeLater(splash::dispose);
+        }
+        if (splashShown >= 0) {
+            try {
+                SplashScreen screen = SplashScreen.getSplashScreen();
+                if (screen != null) screen.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package fxlauncher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.xml.bind.JAXB;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Offline load-test harness for the sync path.
+ * <p>
+ * Generates a synthetic app tree, runs {@link CreateManifest} on it and serves the result from an embedded
+ * HTTP server with injectable latency, bandwidth cap and error rate. {@link HeadlessMainLauncher} is then
+ * driven through a cold, a warm and a one-file-changed sync, reporting wall time, bytes transferred,
+ * request count and peak heap for each scenario. All arguments are passed on to the launcher as well, so
+ * settings like <code>--read-timeout</code> or <code>--hedge</code> can be exercised.
+ * <p>
+ * With <code>--checksums</code> the hashing throughput of every {@link ChecksumAlgorithm} over the generated
+ * tree is reported as well. <code>--bundle-chunk-size=</code> serves {@link Bundle}s with chunks of that size.
+ * <code>--update-server=true</code> serves the tree with the {@link UpdateServer} instead, without latency,
+ * bandwidth cap or errors.
+ *
+ * <pre>
+ * java -classpath fxlauncher.jar fxlauncher.SyncLoadTest --files=150 --min-size=4096 --max-size=8388608 \
+ *     --latency=20 --bandwidth=10485760 --error-rate=0.0 --seed=42 --checksum-algorithm=crc32c --checksums \
+ *     --bundle-chunk-size=33554432
+ * </pre>
+ */
+public class SyncLoadTest {
+    // Keep a strong reference so the level isn't lost when the logger is garbage collected
+    private static final Logger headlessLog = Logger.getLogger("HeadlessMainLauncher");
+
+    private final int fileCount;
+    private final long minSize;
+    private final long maxSize;
+    private final long latency;
+    private final long bandwidth;
+    private final double errorRate;
+    private final Random random;
+    private final ChecksumAlgorithm checksumAlgorithm;
+    private final long bundleChunkSize;
+    private final boolean useUpdateServer;
+    private final List<String> launcherArgs;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private Path workDir;
+    private Path appDir;
+    private Path cacheDir;
+    private HttpServer server;
+    private UpdateServer updateServer;
+    private URI baseURI;
+
+    public SyncLoadTest(LauncherParams params) {
+        Map<String, String> named = params.getNamed();
+        launcherArgs = params.getRaw();
+        checksumAlgorithm = ChecksumAlgorithm.valueOf(named.getOrDefault("checksum-algorithm", ChecksumAlgorithm.DEFAULT.name()));
+        fileCount = Integer.parseInt(named.getOrDefault("files", "150"));
+        minSize = Long.parseLong(named.getOrDefault("min-size", "4096"));
+        maxSize = Long.parseLong(named.getOrDefault("max-size", "8388608"));
+        latency = Long.parseLong(named.getOrDefault("latency", "0"));
+        bandwidth = Long.parseLong(named.getOrDefault("bandwidth", "0"));
+        errorRate = Double.parseDouble(named.getOrDefault("error-rate", "0"));
+        bundleChunkSize = Long.parseLong(named.getOrDefault("bundle-chunk-size", "0"));
+        useUpdateServer = Boolean.parseBoolean(named.getOrDefault("update-server", "false"));
+        random = new Random(Long.parseLong(named.getOrDefault("seed", "42")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        LauncherParams params = new LauncherParams(Arrays.asList(args));
+        headlessLog.setLevel(Level.WARNING);
+
+        SyncLoadTest test = new SyncLoadTest(params);
+        try {
+            test.setup();
+            if (params.getUnnamed().contains("--checksums"))
+                test.benchmarkChecksums();
+            test.run("cold", () -> { });
+            test.run("warm", () -> { });
+            test.run("one-file-changed", test::changeOneFile);
+        } finally {
+            test.teardown();
+        }
+    }
+
+    void setup() throws Exception {
+        workDir = Files.createTempDirectory("fxlauncher-loadtest");
+        appDir = Files.createDirectories(workDir.resolve("app"));
+        cacheDir = workDir.resolve("cache");
+
+        long total = 0;
+        for (int i = 0; i < fileCount; i++) {
+            Path file = appDir.resolve(String.format("lib/dep-%04d.jar", i));
+            Files.createDirectories(file.getParent());
+            total += writeRandomFile(file, nextSize());
+        }
+
+        if (useUpdateServer) {
+            updateServer = new UpdateServer(appDir, new InetSocketAddress("127.0.0.1", 0)).start();
+            baseURI = updateServer.getURI();
+        } else {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::serve);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            baseURI = URI.create(String.format("http://127.0.0.1:%d/", server.getAddress().getPort()));
+        }
+
+        writeManifest();
+        System.out.println(String.format("Generated %d files (%d bytes) in %s, serving from %s", fileCount, total, appDir, baseURI));
+    }
+
+    void teardown() throws IOException {
+        if (server != null) server.stop(0);
+        if (updateServer != null) updateServer.close();
+        if (workDir != null) deleteRecursively(workDir);
+    }
+
+    void run(String scenario, Step prepare) throws Exception {
+        prepare.run();
+
+        requests.set(updateServer != null ? -updateServer.getRequests() : 0);
+        bytesSent.set(updateServer != null ? -updateServer.getBytesSent() : 0);
+        errors.set(0);
+        resetPeakHeap();
+
+        List<String> args = new ArrayList<>(launcherArgs);
+        args.add("--uri=" + baseURI);
+        args.add("--cache-dir=" + cacheDir.toAbsolutePath());
+        HeadlessMainLauncher launcher = new HeadlessMainLauncher(new LauncherParams(args));
+
+        String outcome = "ok";
+        long start = System.nanoTime();
+        try {
+            launcher.syncManifest();
+            launcher.syncFiles();
+        } catch (Exception ex) {
+            outcome = "failed: " + ex;
+        } finally {
+            launcher.unlockCacheDir();
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        if (updateServer != null) {
+            requests.addAndGet(updateServer.getRequests());
+            bytesSent.addAndGet(updateServer.getBytesSent());
+        }
+
+        System.out.println(String.format("%-18s wall=%6d ms  bytes=%12d  requests=%5d  errors=%4d  peak-heap=%5d MB  %s",
+                scenario, elapsed, bytesSent.get(), requests.get(), errors.get(), peakHeap() / (1024 * 1024), outcome));
+        System.out.println(String.format("%-18s client: %s", "", launcher.getMetrics()));
+    }
+
+    void benchmarkChecksums() throws IOException {
+        List<Path> files = listFiles();
+        long total = 0;
+        for (Path file : files) total += Files.size(file);
+
+        for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+            // One warm-up pass so the JIT and the page cache are in the same state for every algorithm
+            for (int pass = 0; pass < 2; pass++) {
+                long start = System.nanoTime();
+                for (Path file : files) algorithm.checksum(file);
+                long elapsed = System.nanoTime() - start;
+                if (pass == 1)
+                    System.out.println(String.format("%-18s %6.2f GB/s", algorithm, (double) total / elapsed));
+            }
+        }
+    }
+
+    private void changeOneFile() throws Exception {
+        List<Path> files = listFiles();
+        Path victim = files.get(random.nextInt(files.size()));
+        writeRandomFile(victim, Files.size(victim));
+        writeManifest();
+    }
+
+    private List<Path> listFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(appDir, new SimpleFileVisitor<Path>() {
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.toString().endsWith(".jar")) files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private void writeManifest() throws Exception {
+        FXManifest manifest = CreateManifest.create(baseURI, "app.Main", appDir, checksumAlgorithm);
+        if (bundleChunkSize > 0) Bundle.create(manifest, appDir, bundleChunkSize);
+        JAXB.marshal(manifest, appDir.resolve("app.xml").toFile());
+    }
+
+    /**
+     * Log-uniform size between min and max, so the tree has many small files and a few large ones.
+     */
+    private long nextSize() {
+        double lo = Math.log(Math.max(1, minSize));
+        double hi = Math.log(Math.max(minSize, maxSize));
+        return (long) Math.exp(lo + random.nextDouble() * (hi - lo));
+    }
+
+    private long writeRandomFile(Path file, long size) throws IOException {
+        byte[] buf = new byte[65536];
+        try (OutputStream output = Files.newOutputStream(file)) {
+            long remaining = size;
+            while (remaining > 0) {
+                random.nextBytes(buf);
+                int len = (int) Math.min(buf.length, remaining);
+                output.write(buf, 0, len);
+                remaining -= len;
+            }
+        }
+        return size;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (latency > 0) Thread.sleep(latency);
+
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            Path file = appDir.resolve(exchange.getRequestURI().getPath().substring(1)).normalize();
+            if (!file.startsWith(appDir) || !Files.isRegularFile(file)) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            long size = Files.size(file);
+            long from = 0;
+            long to = size - 1;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring(6).split("-", 2);
+                if (!bounds[0].isEmpty()) from = Long.parseLong(bounds[0]);
+                if (bounds.length > 1 && !bounds[1].isEmpty()) to = Math.min(size - 1, Long.parseLong(bounds[1]));
+                if (from > to) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */" + size);
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Range", String.format("bytes %d-%d/%d", from, to, size));
+            }
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+
+            long length = to - from + 1;
+            exchange.sendResponseHeaders(range != null ? 206 : 200, length);
+
+            if ("HEAD".equals(exchange.getRequestMethod())) return;
+
+            try (InputStream input = Files.newInputStream(file); OutputStream output = exchange.getResponseBody()) {
+                long skipped = 0;
+                while (skipped < from) skipped += input.skip(from - skipped);
+
+                byte[] buf = new byte[16384];
+                long remaining = length;
+                long start = System.nanoTime();
+                long sent = 0;
+                int read;
+                while (remaining > 0 && (read = input.read(buf, 0, (int) Math.min(buf.length, remaining))) > -1) {
+                    output.write(buf, 0, read);
+                    remaining -= read;
+                    sent += read;
+                    bytesSent.addAndGet(read);
+                    if (bandwidth > 0) {
+                        long due = sent * 1_000_000_000L / bandwidth;
+                        long ahead = due - (System.nanoTime() - start);
+                        if (ahead > 0) Thread.sleep(ahead / 1_000_000, (int) (ahead % 1_000_000));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        return peak;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    interface Step {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,92 @@
+package fxlauncher;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the downloads of one launcher run. A summary is logged after every sync.
+ */
+public class SyncMetrics {
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    /**
+     * The most recent times to first byte, overwritten oldest first once full
+     */
+    private final long[] timeToFirstByte = new long[256];
+    private int samples;
+
+    void request() {
+        requests.incrementAndGet();
+    }
+
+    void bytes(long count) {
+        bytes.addAndGet(count);
+    }
+
+    void retry() {
+        retries.incrementAndGet();
+    }
+
+    void stall() {
+        stalls.incrementAndGet();
+    }
+
+    void hedged() {
+        hedged.incrementAndGet();
+    }
+
+    void hedgeWon() {
+        hedgeWins.incrementAndGet();
+    }
+
+    synchronized void timeToFirstByte(long millis) {
+        timeToFirstByte[samples++ % timeToFirstByte.length] = millis;
+        // Stay within one lap past the window so the counter never overflows
+        if (samples == 2 * timeToFirstByte.length) samples = timeToFirstByte.length;
+    }
+
+    /**
+     * The 95th percentile of the recent times to first byte in milliseconds, or -1 until there are enough samples
+     */
+    synchronized long timeToFirstByteP95(int minSamples) {
+        int count = Math.min(samples, timeToFirstByte.length);
+        if (count < minSamples || count == 0) return -1;
+        long[] sorted = Arrays.copyOf(timeToFirstByte, count);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(count * 0.95) - 1];
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getStalls() {
+        return stalls.get();
+    }
+
+    public long getHedged() {
+        return hedged.get();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests=%d bytes=%d ttfb-p95=%d ms retries=%d stalls=%d hedged=%d hedge-wins=%d",
+                getRequests(), getBytes(), timeToFirstByteP95(1), getRetries(), getStalls(), getHedged(), getHedgeWins());
+    }
+}
@@ -64,4 +64,11 @@ public interface UIProvider {
 	 * @param progress A number between 0 and 1
 	 */
 	void updateProgress(double progress);
+
+	/**
+	 * Called once the application has started and the launcher stage is closed. Stop any animations and
+	 * release resources here, the launcher UI is not used again.
+	 */
+	default void dispose() {
+	}
 }
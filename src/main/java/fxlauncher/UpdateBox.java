@@ -13,6 +13,7 @@ import javafx.scene.control.ProgressBar;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.text.TextFlow;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
@@ -23,6 +24,8 @@ public class UpdateBox implements UIProvider {
     private BorderPane root;
     private Label header;
     private StringProperty phase;
+    private Label phaseLabel;
+    private Timeline headerTimeline;
 
     @Override
     public void init(Stage stage, StringProperty phaseProperty) {
@@ -42,6 +45,7 @@ public class UpdateBox implements UIProvider {
         Label label = new Label("检测更新中...");
         label.getStyleClass().add("phase");
         label.textProperty().bind(phase);
+        phaseLabel = label;
         HBox box = new HBox();
         JFXSpinner spinner = new JFXSpinner();
         spinner.setRadius(5);
@@ -61,10 +65,16 @@ public class UpdateBox implements UIProvider {
         ScrollPane topPane = new ScrollPane();
         topPane.getStyleClass().add("top-scroll");
         topPane.setFitToWidth(true);
-        Label content = new Label();
-        content.setText(manifest.getWhatNew());
-        topPane.setContent(content);
-        content.getStyleClass().add("what-new");
+        if (WhatsNew.isMarkup(manifest.whatNew)) {
+            TextFlow content = WhatsNew.render(manifest.whatNew, null);
+            content.getStyleClass().add("what-new");
+            topPane.setContent(content);
+        } else {
+            Label content = new Label();
+            content.setText(manifest.getWhatNew());
+            topPane.setContent(content);
+            content.getStyleClass().add("what-new");
+        }
         root.setTop(topPane);
         root.setPadding(new Insets(0));
         Label label = new Label(manifest.updateText);
@@ -72,11 +82,11 @@ public class UpdateBox implements UIProvider {
         root.setCenter(label);
         root.setBottom(progressBar);
         BorderPane.setAlignment(progressBar, Pos.CENTER);
-        Timeline tl = new Timeline(
+        headerTimeline = new Timeline(
                 new KeyFrame(Duration.seconds(4), new KeyValue(header.scaleXProperty(), 1.5)),
                 new KeyFrame(Duration.seconds(4), new KeyValue(header.scaleYProperty(), 1.5))
         );
-        tl.play();
+        headerTimeline.play();
         return root;
     }
 
@@ -85,5 +95,18 @@ public class UpdateBox implements UIProvider {
         progressBar.setProgress(progress);
     }
 
+    @Override
+    public void dispose() {
+        if (headerTimeline != null) headerTimeline.stop();
+        if (phaseLabel != null) phaseLabel.textProperty().unbind();
+        if (root != null) root.getChildren().clear();
+        headerTimeline = null;
+        phaseLabel = null;
+        progressBar = null;
+        header = null;
+        root = null;
+        stage = null;
+    }
+
 
 }
\ No newline at end of file
@@ -5,11 +5,17 @@ public class UpdateInfo {
     private String whatNew;
     private String version;
     private Boolean update;
+    private UpdateService updateService;
 
     public UpdateInfo(String whatNew, String version, Boolean update) {
+        this(whatNew, version, update, null);
+    }
+
+    public UpdateInfo(String whatNew, String version, Boolean update, UpdateService updateService) {
         this.whatNew = whatNew;
         this.version = version;
         this.update = update;
+        this.updateService = updateService;
     }
 
     public String getWhatNew() {
@@ -35,4 +41,11 @@ public class UpdateInfo {
     public void setUpdate(Boolean update) {
         this.update = update;
     }
+
+    /**
+     * Checks for updates while the application is running
+     */
+    public UpdateService getUpdateService() {
+        return updateService;
+    }
 }
@@ -0,0 +1,503 @@
+package fxlauncher;
+
+import javax.xml.bind.JAXB;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A small HTTP server for the output directory of {@link CreateManifest}, so an application can be published
+ * without a separate web server.
+ * <p>
+ * All connections are served by one thread with non-blocking sockets, and file content is sent with
+ * {@link FileChannel#transferTo}, which lets the operating system copy it to the socket without passing through
+ * the heap. The server supports keep-alive and pipelining, single byte ranges, <code>If-None-Match</code>,
+ * <code>If-Modified-Since</code> and <code>If-Range</code>. ETags are strong and derived from the checksums in
+ * <code>app.xml</code> where the file is unchanged since the manifest was created. A client accepting gzip gets
+ * <code>file.gz</code> instead of <code>file</code> if it exists. Content addressed objects are sent with a
+ * long lived immutable <code>Cache-Control</code>, everything else must be revalidated.
+ *
+ * <pre>
+ * java -classpath fxlauncher.jar fxlauncher.UpdateServer /path/to/app --port=8080 --host=0.0.0.0
+ * </pre>
+ */
+public class UpdateServer implements Closeable {
+    private static final Logger log = Logger.getLogger("UpdateServer");
+
+    private static final int MAX_HEAD = 16384;
+    private static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+    private static final byte[] END_OF_HEAD = "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final Path root;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private volatile boolean running = true;
+    private Thread thread;
+
+    // Checksums of the manifest files by path, reloaded when app.xml changes
+    private Map<String, LibraryFile> manifestFiles = new HashMap<>();
+    private long manifestModified = -1;
+
+    public UpdateServer(Path root, InetSocketAddress address) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: fxlauncher.UpdateServer <app-dir> [--port=8080] [--host=0.0.0.0]");
+            System.exit(1);
+        }
+        LauncherParams params = new LauncherParams(Arrays.asList(args).subList(1, args.length));
+        Map<String, String> named = params.getNamed();
+        InetSocketAddress address = new InetSocketAddress(named.getOrDefault("host", "0.0.0.0"), Integer.parseInt(named.getOrDefault("port", "8080")));
+
+        UpdateServer server = new UpdateServer(Paths.get(args[0]), address);
+        log.info(String.format("Serving %s on %s", server.root, server.getURI()));
+        server.run();
+    }
+
+    /**
+     * Serve on a background daemon thread until closed.
+     */
+    public UpdateServer start() {
+        thread = new Thread(this::run, "FXLauncher-UpdateServer");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public URI getURI() {
+        String host = server.socket().getInetAddress().isAnyLocalAddress() ? "localhost" : server.socket().getInetAddress().getHostAddress();
+        return URI.create(String.format("http://%s:%d/", host, getPort()));
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(1000);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        else if (key.isReadable()) read(key);
+                        else if (key.isWritable()) write(key);
+                    } catch (IOException | RuntimeException e) {
+                        log.log(Level.FINE, "Closing connection", e);
+                        closeConnection(key);
+                    }
+                }
+                closeIdleConnections();
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Update server stopped", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) closeConnection(key);
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.channel.read(connection.in) < 0) {
+            closeConnection(key);
+            return;
+        }
+        connection.lastActive = System.currentTimeMillis();
+        processBuffered(key, connection);
+    }
+
+    /**
+     * Answer the next complete request in the input buffer, or wait for more input.
+     */
+    private void processBuffered(SelectionKey key, Connection connection) throws IOException {
+        int end = indexOf(connection.in, END_OF_HEAD);
+        if (end < 0) {
+            if (!connection.in.hasRemaining()) {
+                connection.respond(simple(431, "Request Header Fields Too Large"), null, 0, 0, false);
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+            return;
+        }
+        connection.in.flip();
+        byte[] head = new byte[end];
+        connection.in.get(head);
+        connection.in.position(end + END_OF_HEAD.length);
+        connection.in.compact();
+
+        requests.incrementAndGet();
+        respond(connection, new String(head, StandardCharsets.ISO_8859_1));
+        key.interestOps(SelectionKey.OP_WRITE);
+        write(key);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.head.hasRemaining()) {
+            connection.channel.write(connection.head);
+            if (connection.head.hasRemaining()) return;
+        }
+        while (connection.remaining > 0) {
+            long sent = connection.body.transferTo(connection.position, connection.remaining, connection.channel);
+            if (sent <= 0) return;
+            connection.position += sent;
+            connection.remaining -= sent;
+            connection.lastActive = System.currentTimeMillis();
+            bytesSent.addAndGet(sent);
+        }
+        connection.finishResponse();
+        if (!connection.keepAlive) {
+            closeConnection(key);
+            return;
+        }
+        processBuffered(key, connection);
+    }
+
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection && now - ((Connection) key.attachment()).lastActive > IDLE_TIMEOUT)
+                closeConnection(key);
+        }
+    }
+
+    private static void closeConnection(SelectionKey key) {
+        if (!(key.attachment() instanceof Connection)) return;
+        key.cancel();
+        try {
+            ((Connection) key.attachment()).finishResponse();
+            key.channel().close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void respond(Connection connection, String head) throws IOException {
+        String[] lines = head.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            connection.respond(simple(400, "Bad Request"), null, 0, 0, false);
+            return;
+        }
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT), lines[i].substring(colon + 1).trim());
+        }
+        String method = requestLine[0];
+        String connectionHeader = headers.getOrDefault("connection", "").toLowerCase(Locale.ROOT);
+        boolean keepAlive = "HTTP/1.1".equals(requestLine[2]) ? !connectionHeader.contains("close") : connectionHeader.contains("keep-alive");
+
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            // A request body would have to be skipped, so don't bother keeping the connection
+            connection.respond(simple(405, "Method Not Allowed").header("Allow", "GET, HEAD"), null, 0, 0, false);
+            return;
+        }
+
+        Path file = resolve(requestLine[1]);
+        if (file == null || !Files.isRegularFile(file)) {
+            connection.respond(simple(404, "Not Found"), null, 0, 0, keepAlive);
+            return;
+        }
+        String relative = root.relativize(file).toString().replace("\\", "/");
+        String etag = etag(relative, file);
+
+        // Serve the precompressed variant to clients accepting gzip
+        Path variant = file.resolveSibling(file.getFileName() + ".gz");
+        boolean hasVariant = !relative.endsWith(".gz") && Files.isRegularFile(variant);
+        boolean gzip = hasVariant && headers.getOrDefault("accept-encoding", "").toLowerCase(Locale.ROOT).contains("gzip");
+        Path content = gzip ? variant : file;
+        if (gzip) etag = etag.substring(0, etag.length() - 1) + "-gz\"";
+
+        long size = Files.size(content);
+        long modified = Files.getLastModifiedTime(content).toMillis();
+        Response response = new Response(200, "OK")
+                .header("ETag", etag)
+                .header("Last-Modified", HTTP_DATE.format(Instant.ofEpochMilli(modified)))
+                .header("Cache-Control", relative.startsWith(ContentAddressed.DIR + "/") ? "public, max-age=31536000, immutable" : "no-cache")
+                .header("Accept-Ranges", "bytes");
+        if (hasVariant) response.header("Vary", "Accept-Encoding");
+        if (gzip) response.header("Content-Encoding", "gzip");
+
+        if (notModified(headers, etag, modified)) {
+            response.status = 304;
+            response.reason = "Not Modified";
+            connection.respond(response, null, 0, 0, keepAlive);
+            return;
+        }
+
+        long from = 0;
+        long length = size;
+        String range = headers.get("range");
+        String ifRange = headers.get("if-range");
+        if (range != null && (ifRange == null || ifRange.equals(etag) || ifRange.equals(HTTP_DATE.format(Instant.ofEpochMilli(modified))))) {
+            long[] bounds = parseRange(range, size);
+            if (bounds != null && bounds.length == 0) {
+                connection.respond(simple(416, "Range Not Satisfiable").header("Content-Range", "bytes */" + size), null, 0, 0, keepAlive);
+                return;
+            }
+            if (bounds != null) {
+                from = bounds[0];
+                length = bounds[1] - bounds[0] + 1;
+                response.status = 206;
+                response.reason = "Partial Content";
+                response.header("Content-Range", String.format("bytes %d-%d/%d", bounds[0], bounds[1], size));
+            }
+        }
+        response.header("Content-Type", contentType(relative));
+        response.header("Content-Length", String.valueOf(length));
+
+        FileChannel body = "HEAD".equals(method) || length == 0 ? null : FileChannel.open(content, StandardOpenOption.READ);
+        connection.respond(response, body, from, body != null ? length : 0, keepAlive);
+    }
+
+    /**
+     * The file for a request target, or null if it is outside the app dir or hidden.
+     */
+    private Path resolve(String target) {
+        try {
+            String path = URI.create(target).getPath();
+            if (path == null || !path.startsWith("/")) return null;
+            Path file = root.resolve(path.substring(1)).normalize();
+            if (!file.startsWith(root)) return null;
+            for (Path segment : root.relativize(file))
+                if (segment.toString().startsWith(".")) return null;
+            return file;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A strong ETag from the manifest checksum if the file is unchanged since the manifest was created, otherwise
+     * from its size and modification time.
+     */
+    private String etag(String relative, Path file) throws IOException {
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        LibraryFile lib = manifestFiles().get(relative);
+        if (lib != null && lib.size == size && lib.modified != null && lib.modified == modified)
+            return String.format("\"%s-%s-%x\"", lib.algorithm(), lib.checksum, size);
+        return String.format("\"%x-%x\"", size, modified);
+    }
+
+    private Map<String, LibraryFile> manifestFiles() {
+        Path manifestPath = root.resolve("app.xml");
+        try {
+            long modified = Files.exists(manifestPath) ? Files.getLastModifiedTime(manifestPath).toMillis() : -1;
+            if (modified != manifestModified) {
+                Map<String, LibraryFile> files = new HashMap<>();
+                if (modified >= 0) {
+                    FXManifest manifest = JAXB.unmarshal(manifestPath.toFile(), FXManifest.class);
+                    for (LibraryFile lib : manifest.files) {
+                        files.put(lib.file, lib);
+                        if (lib.object != null) files.put(lib.object, lib);
+                    }
+                }
+                manifestFiles = files;
+                manifestModified = modified;
+            }
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Unable to read app.xml, using ETags from modification times", e);
+            manifestFiles = new HashMap<>();
+            manifestModified = -1;
+        }
+        return manifestFiles;
+    }
+
+    private static boolean notModified(Map<String, String> headers, String etag, long modified) {
+        String ifNoneMatch = headers.get("if-none-match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals("*") || tag.equals(etag)) return true;
+            }
+            return false;
+        }
+        String ifModifiedSince = headers.get("if-modified-since");
+        if (ifModifiedSince != null) {
+            try {
+                long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return modified / 1000 <= since / 1000;
+            } catch (DateTimeParseException ignored) {
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a single byte range.
+     *
+     * @return the first and last byte, an empty array if the range can't be satisfied, or null to send the whole
+     * file because the header is invalid or asks for several ranges
+     */
+    static long[] parseRange(String range, long size) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) return null;
+        String spec = range.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                if (last.isEmpty()) return null;
+                long suffix = Long.parseLong(last);
+                if (suffix == 0 || size == 0) return new long[0];
+                return new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            long from = Long.parseLong(first);
+            long to = last.isEmpty() ? size - 1 : Math.min(size - 1, Long.parseLong(last));
+            if (!last.isEmpty() && Long.parseLong(last) < from) return null;
+            if (from >= size) return new long[0];
+            return new long[]{from, to};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String contentType(String file) {
+        String name = file.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".xml")) return "application/xml";
+        if (name.endsWith(".jar")) return "application/java-archive";
+        if (name.endsWith(".zip")) return "application/zip";
+        if (name.endsWith(".gz")) return "application/gzip";
+        if (name.endsWith(".html") || name.endsWith(".htm")) return "text/html; charset=utf-8";
+        if (name.endsWith(".md")) return "text/markdown; charset=utf-8";
+        return "application/octet-stream";
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= buffer.position(); i++) {
+            int j = 0;
+            while (j < pattern.length && buffer.get(i + j) == pattern[j]) j++;
+            if (j == pattern.length) return i;
+        }
+        return -1;
+    }
+
+    private static Response simple(int status, String reason) {
+        return new Response(status, reason).header("Content-Length", "0");
+    }
+
+    private static class Response {
+        int status;
+        String reason;
+        final StringBuilder headers = new StringBuilder();
+
+        Response(int status, String reason) {
+            this.status = status;
+            this.reason = reason;
+        }
+
+        Response header(String name, String value) {
+            headers.append(name).append(": ").append(value).append("\r\n");
+            return this;
+        }
+    }
+
+    private static class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(MAX_HEAD);
+        ByteBuffer head;
+        FileChannel body;
+        long position;
+        long remaining;
+        boolean keepAlive;
+        long lastActive = System.currentTimeMillis();
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void respond(Response response, FileChannel body, long position, long length, boolean keepAlive) {
+            String head = String.format("HTTP/1.1 %d %s\r\nDate: %s\r\nServer: FXLauncher\r\n%sConnection: %s\r\n\r\n",
+                    response.status, response.reason, HTTP_DATE.format(Instant.now()), response.headers, keepAlive ? "keep-alive" : "close");
+            this.head = ByteBuffer.wrap(head.getBytes(StandardCharsets.ISO_8859_1));
+            this.body = body;
+            this.position = position;
+            this.remaining = length;
+            this.keepAlive = keepAlive;
+        }
+
+        void finishResponse() throws IOException {
+            if (body != null) body.close();
+            body = null;
+            remaining = 0;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package fxlauncher;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks for updates while the application is running, for sessions that last longer than a launch.
+ * <p>
+ * A newer remote manifest is synced with the launcher's own sync code on a low priority background thread, but
+ * into a staging dir inside the cache dir instead of the cache dir itself, so the running application is never
+ * touched. The next start moves the staged files into place before the usual sync, which then has nothing left
+ * to download. Listeners are told about progress and when an update is ready, so the application can suggest a
+ * restart. They are called on the update thread, use <code>Platform.runLater</code> to touch the UI.
+ * <p>
+ * The running launcher's service is available from {@link UpdateInfo#getUpdateService()} or {@link #get()}.
+ *
+ * <pre>
+ * UpdateService updates = UpdateService.get();
+ * updates.addListener(manifest -&gt; Platform.runLater(() -&gt; showRestartHint(manifest.getVersion())));
+ * updates.start(6, TimeUnit.HOURS);
+ * </pre>
+ */
+public class UpdateService {
+    private static final Logger log = Logger.getLogger("UpdateService");
+
+    private static volatile UpdateService current;
+
+    public interface Listener {
+        /**
+         * An update was downloaded and will be applied when the application is started again
+         */
+        void updateStaged(FXManifest manifest);
+
+        /**
+         * Download progress of an update between 0 and 1
+         */
+        default void progress(double progress) {
+        }
+
+        /**
+         * A check or download failed, it is retried at the next check
+         */
+        default void failed(Exception error) {
+        }
+    }
+
+    private final AbstractLauncher<?> launcher;
+    private final Path cacheDir;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "FXLauncher-UpdateService");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private ScheduledFuture<?> schedule;
+    private long interval;
+    private int generation;
+    private volatile double jitter = 0.25;
+    private volatile FXManifest staged;
+
+    UpdateService(AbstractLauncher<?> launcher, Path cacheDir) {
+        this.launcher = launcher;
+        this.cacheDir = cacheDir;
+        // No thread is kept around while nothing is scheduled
+        executor.setKeepAliveTime(30, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        current = this;
+    }
+
+    /**
+     * The update service of the launcher that started this application, or null if it wasn't started by FXLauncher
+     */
+    public static UpdateService get() {
+        return current;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Check for updates periodically, the first time after one interval. Every interval is varied randomly by the
+     * jitter, so installations started at the same time don't all ask the server at once, and checks wait for
+     * as long as the server asked with <code>Retry-After</code>.
+     */
+    public synchronized void start(long interval, TimeUnit unit) {
+        stop();
+        this.interval = unit.toMillis(interval);
+        scheduleNext(++generation);
+    }
+
+    public synchronized void stop() {
+        interval = 0;
+        if (schedule != null) {
+            schedule.cancel(false);
+            schedule = null;
+        }
+    }
+
+    /**
+     * Vary the check interval by up to this fraction in both directions, 0.25 by default
+     */
+    public void setJitter(double jitter) {
+        this.jitter = Math.max(0, Math.min(1, jitter));
+    }
+
+    private synchronized void scheduleNext(int scheduled) {
+        // Stopped or restarted while the check was running
+        if (interval <= 0 || scheduled != generation) return;
+        long delay = (long) (interval * (1 - jitter + 2 * jitter * ThreadLocalRandom.current().nextDouble()));
+        delay = Math.max(delay, Rollout.retryAt(cacheDir) - System.currentTimeMillis());
+        schedule = executor.schedule(() -> {
+            check();
+            scheduleNext(scheduled);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Check for an update right away.
+     *
+     * @return completes with true if an update is staged
+     */
+    public CompletableFuture<Boolean> checkNow() {
+        return CompletableFuture.supplyAsync(this::check, executor);
+    }
+
+    public boolean isUpdateStaged() {
+        return staged != null;
+    }
+
+    /**
+     * The manifest of the staged update, or null if there is none
+     */
+    public FXManifest getStagedManifest() {
+        return staged;
+    }
+
+    private boolean check() {
+        // Leave the cache dir alone while another launcher syncs it, and check again next time
+        try (CacheLock lock = CacheLock.tryAcquire(cacheDir)) {
+            if (lock == null) {
+                log.info(String.format("%s is being synced by another launcher, skipping update check", cacheDir));
+                return staged != null;
+            }
+            FXManifest previous = staged;
+            FXManifest update = launcher.stageUpdate(cacheDir, previous, progress -> listeners.forEach(l -> l.progress(progress)));
+            staged = update;
+            if (update != null && update != previous)
+                listeners.forEach(l -> l.updateStaged(update));
+            return update != null;
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Update check failed", e);
+            listeners.forEach(l -> l.failed(e));
+            return staged != null;
+        }
+    }
+}
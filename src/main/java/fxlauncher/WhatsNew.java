@@ -0,0 +1,210 @@
+package fxlauncher;
+
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.Hyperlink;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders release notes into a {@link TextFlow}, so showing them doesn't need a WebView and its WebKit engine.
+ * <p>
+ * Understands simple markdown (headings, bullet and numbered lists, bold, italic, code and links) and basic
+ * html, which is reduced to the same elements. Everything else is shown as plain text. The <code>whatNew</code>
+ * format of the manifest, items separated by <code>||</code>, is rendered as a list of lines.
+ */
+class WhatsNew {
+    private static final Pattern HTML = Pattern.compile("<(html|body|p|div|br|h[1-6]|ul|ol|li|b|strong|i|em|code|a)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern MARKDOWN = Pattern.compile("(?m)^(#{1,6} |[-*+] |\\d+\\. )|\\*\\*|`|\\[[^\\]]+]\\([^)]+\\)");
+    private static final Pattern INLINE = Pattern.compile("\\*\\*(.+?)\\*\\*|(?<!\\w)__(.+?)__(?!\\w)|\\*(.+?)\\*|(?<!\\w)_(.+?)_(?!\\w)|`(.+?)`|\\[([^\\]]+)]\\(([^)]+)\\)");
+    private static final Pattern HEADING = Pattern.compile("^(#{1,6})\\s+(.*?)\\s*#*$");
+    private static final Pattern LIST_ITEM = Pattern.compile("^(?:[-*+]|(\\d+)\\.)\\s+(.*)$");
+    private static final Pattern CHARSET = Pattern.compile("charset=\"?([\\w-]+)", Pattern.CASE_INSENSITIVE);
+
+    private WhatsNew() {
+    }
+
+    /**
+     * Download the release notes. Called off the FX thread, with the timeouts of the {@link Downloader}.
+     */
+    static String fetch(String url, int connectTimeout, int readTimeout) throws IOException {
+        URI uri = URI.create(url);
+        if (Objects.equals(uri.getScheme(), "file"))
+            return new String(Files.readAllBytes(Paths.get(uri)), StandardCharsets.UTF_8);
+
+        URLConnection connection = Connections.open(uri);
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        Charset charset = StandardCharsets.UTF_8;
+        if (connection.getContentType() != null) {
+            Matcher matcher = CHARSET.matcher(connection.getContentType());
+            if (matcher.find() && Charset.isSupported(matcher.group(1))) charset = Charset.forName(matcher.group(1));
+        }
+        try (InputStream input = connection.getInputStream()) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = input.read(buf)) > -1) content.write(buf, 0, read);
+            return new String(content.toByteArray(), charset);
+        }
+    }
+
+    /**
+     * True if the text contains markdown or html, and not just plain lines
+     */
+    static boolean isMarkup(String text) {
+        return text != null && (HTML.matcher(text).find() || MARKDOWN.matcher(text).find());
+    }
+
+    /**
+     * Render markdown, basic html or <code>||</code> separated lines.
+     *
+     * @param onLink opens a link, or null to show links as plain text
+     */
+    static TextFlow render(String content, Consumer<String> onLink) {
+        String markdown = HTML.matcher(content).find() ? htmlToMarkdown(content) : content.replace("||", "\n");
+        Font base = Font.getDefault();
+        TextFlow flow = new TextFlow();
+        flow.getStyleClass().add("whats-new");
+
+        StringBuilder paragraph = new StringBuilder();
+        for (String line : markdown.split("\\r?\\n")) {
+            String trimmed = line.trim();
+            Matcher heading = HEADING.matcher(trimmed);
+            Matcher item = LIST_ITEM.matcher(trimmed);
+            if (trimmed.isEmpty()) {
+                flushParagraph(flow, paragraph, base, onLink);
+            } else if (heading.matches()) {
+                flushParagraph(flow, paragraph, base, onLink);
+                double size = base.getSize() * (1.6 - 0.1 * heading.group(1).length());
+                startBlock(flow);
+                flow.getChildren().add(text(heading.group(2), Font.font(base.getFamily(), FontWeight.BOLD, size)));
+                flow.getChildren().add(new Text("\n"));
+            } else if (item.matches()) {
+                flushParagraph(flow, paragraph, base, onLink);
+                flow.getChildren().add(new Text(item.group(1) != null ? String.format("  %s. ", item.group(1)) : "  • "));
+                addInline(flow, item.group(2), base, onLink);
+                flow.getChildren().add(new Text("\n"));
+            } else {
+                if (paragraph.length() > 0) paragraph.append(' ');
+                paragraph.append(trimmed);
+            }
+        }
+        flushParagraph(flow, paragraph, base, onLink);
+        return flow;
+    }
+
+    private static void flushParagraph(TextFlow flow, StringBuilder paragraph, Font base, Consumer<String> onLink) {
+        if (paragraph.length() == 0) return;
+        startBlock(flow);
+        addInline(flow, paragraph.toString(), base, onLink);
+        flow.getChildren().add(new Text("\n"));
+        paragraph.setLength(0);
+    }
+
+    private static void startBlock(TextFlow flow) {
+        // A blank line between blocks, but not before the first one
+        if (!flow.getChildren().isEmpty()) flow.getChildren().add(new Text("\n"));
+    }
+
+    private static void addInline(TextFlow flow, String text, Font base, Consumer<String> onLink) {
+        Matcher matcher = INLINE.matcher(text);
+        int start = 0;
+        while (matcher.find()) {
+            if (matcher.start() > start) flow.getChildren().add(text(text.substring(start, matcher.start()), base));
+            if (matcher.group(1) != null || matcher.group(2) != null) {
+                String bold = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+                flow.getChildren().add(text(bold, Font.font(base.getFamily(), FontWeight.BOLD, base.getSize())));
+            } else if (matcher.group(3) != null || matcher.group(4) != null) {
+                String italic = matcher.group(3) != null ? matcher.group(3) : matcher.group(4);
+                flow.getChildren().add(text(italic, Font.font(base.getFamily(), FontPosture.ITALIC, base.getSize())));
+            } else if (matcher.group(5) != null) {
+                flow.getChildren().add(text(matcher.group(5), Font.font("Monospaced", base.getSize())));
+            } else {
+                flow.getChildren().add(link(matcher.group(6), matcher.group(7), base, onLink));
+            }
+            start = matcher.end();
+        }
+        if (start < text.length()) flow.getChildren().add(text(text.substring(start), base));
+    }
+
+    private static Text text(String value, Font font) {
+        Text text = new Text(value);
+        text.setFont(font);
+        return text;
+    }
+
+    private static Node link(String label, String url, Font base, Consumer<String> onLink) {
+        if (onLink == null) return text(label, base);
+        Hyperlink link = new Hyperlink(label);
+        link.setFont(base);
+        link.setPadding(Insets.EMPTY);
+        link.setOnAction(event -> onLink.accept(url));
+        return link;
+    }
+
+    /**
+     * Reduce html to the markdown subset understood by {@link #render}, dropping every other tag.
+     */
+    static String htmlToMarkdown(String html) {
+        String text = html
+                .replaceAll("(?is)<(head|script|style)\\b.*?</\\1>", "")
+                .replaceAll("(?s)<!--.*?-->", "")
+                // Whitespace in html is not significant, line breaks come from the tags below
+                .replaceAll("\\s+", " ")
+                .replaceAll("(?i)<br\\s*/?>", "\n")
+                .replaceAll("(?i)</?(p|div|ul|ol|table|tr|blockquote)\\b[^>]*>", "\n\n")
+                .replaceAll("(?i)</(h[1-6]|li)>", "\n");
+        text = replace(text, "(?i)<h([1-6])\\b[^>]*>", m -> "\n\n" + repeat('#', Integer.parseInt(m.group(1))) + " ");
+        text = text
+                .replaceAll("(?i)<li\\b[^>]*>", "\n- ")
+                .replaceAll("(?i)</?(b|strong)\\b[^>]*>", "**")
+                .replaceAll("(?i)</?(i|em)\\b[^>]*>", "*")
+                .replaceAll("(?i)</?code\\b[^>]*>", "`");
+        text = replace(text, "(?is)<a\\b[^>]*href=[\"']([^\"']*)[\"'][^>]*>(.*?)</a>", m -> String.format("[%s](%s)", m.group(2).trim(), m.group(1)));
+        text = text.replaceAll("<[^>]*>", "");
+        return decodeEntities(text);
+    }
+
+    private static String replace(String text, String regex, Function<Matcher, String> replacement) {
+        Matcher matcher = Pattern.compile(regex).matcher(text);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) matcher.appendReplacement(result, Matcher.quoteReplacement(replacement.apply(matcher)));
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) builder.append(c);
+        return builder.toString();
+    }
+
+    private static String decodeEntities(String text) {
+        text = replace(text, "&#([0-9]{1,7});|&#[xX]([0-9a-fA-F]{1,6});", m -> {
+            int codePoint = m.group(1) != null ? Integer.parseInt(m.group(1)) : Integer.parseInt(m.group(2), 16);
+            // Invalid entities stay as they are
+            return Character.isValidCodePoint(codePoint) ? new String(Character.toChars(codePoint)) : m.group();
+        });
+        return text.replace("&nbsp;", " ").replace("&lt;", "<").replace("&gt;", ">")
+                .replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+    }
+}
@@ -0,0 +1,128 @@
+package fxlauncher;
+
+import java.util.zip.Checksum;
+
+/**
+ * Streaming XXH64 with seed 0.
+ */
+class XxHash64 implements Checksum {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private final byte[] buffer = new byte[32];
+    private int buffered;
+    private long total;
+    private long v1, v2, v3, v4;
+
+    XxHash64() {
+        reset();
+    }
+
+    public void update(int b) {
+        update(new byte[]{(byte) b}, 0, 1);
+    }
+
+    public void update(byte[] b, int off, int len) {
+        total += len;
+
+        if (buffered + len < 32) {
+            System.arraycopy(b, off, buffer, buffered, len);
+            buffered += len;
+            return;
+        }
+
+        if (buffered > 0) {
+            int fill = 32 - buffered;
+            System.arraycopy(b, off, buffer, buffered, fill);
+            stripe(buffer, 0);
+            off += fill;
+            len -= fill;
+            buffered = 0;
+        }
+
+        while (len >= 32) {
+            stripe(b, off);
+            off += 32;
+            len -= 32;
+        }
+
+        System.arraycopy(b, off, buffer, 0, len);
+        buffered = len;
+    }
+
+    private void stripe(byte[] b, int off) {
+        v1 = round(v1, readLong(b, off));
+        v2 = round(v2, readLong(b, off + 8));
+        v3 = round(v3, readLong(b, off + 16));
+        v4 = round(v4, readLong(b, off + 24));
+    }
+
+    public long getValue() {
+        long h;
+        if (total >= 32) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = v3 + P5;
+        }
+        h += total;
+
+        int off = 0;
+        while (off + 8 <= buffered) {
+            h ^= round(0, readLong(buffer, off));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+            off += 8;
+        }
+        if (off + 4 <= buffered) {
+            h ^= (readInt(buffer, off) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            off += 4;
+        }
+        while (off < buffered) {
+            h ^= (buffer[off] & 0xFF) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+            off++;
+        }
+
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    public void reset() {
+        v1 = P1 + P2;
+        v2 = P2;
+        v3 = 0;
+        v4 = -P1;
+        total = 0;
+        buffered = 0;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long merge(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * P1 + P4;
+    }
+
+    private static long readLong(byte[] b, int off) {
+        return (readInt(b, off) & 0xFFFFFFFFL) | ((long) readInt(b, off + 4) << 32);
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+    }
+}
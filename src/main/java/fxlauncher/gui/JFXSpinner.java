@@ -19,11 +19,14 @@
 
 package fxlauncher.gui;
 
+import com.sun.javafx.css.converters.EnumConverter;
 import com.sun.javafx.css.converters.SizeConverter;
 import javafx.css.CssMetaData;
 import javafx.css.SimpleStyleableDoubleProperty;
+import javafx.css.SimpleStyleableObjectProperty;
 import javafx.css.Styleable;
 import javafx.css.StyleableDoubleProperty;
+import javafx.css.StyleableObjectProperty;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.Skin;
 import javafx.scene.layout.Region;
@@ -37,6 +40,24 @@ public class JFXSpinner extends ProgressIndicator {
 
     public static final double INDETERMINATE_PROGRESS = -1;
 
+    /**
+     * How the indeterminate spinner is animated
+     */
+    public enum Animation {
+        /**
+         * Growing and shrinking arc cycling through four colours
+         */
+        FULL,
+        /**
+         * Fixed arc rotated as a cached bitmap at <code>-jfx-frame-rate</code> frames per second
+         */
+        ROTATE,
+        /**
+         * Fixed arc without animation
+         */
+        STATIC
+    }
+
     public JFXSpinner() {
         this(INDETERMINATE_PROGRESS);
     }
@@ -119,6 +140,47 @@ public class JFXSpinner extends ProgressIndicator {
         this.startingAngleProperty().set(startingAngle);
     }
 
+    /**
+     * specifies how the indeterminate spinner is animated. The CSS property <code>-jfx-animation</code> is
+     * inherited, so it can be set on any parent of the spinner.
+     */
+    private StyleableObjectProperty<Animation> animation = new SimpleStyleableObjectProperty<>(StyleableProperties.ANIMATION,
+            JFXSpinner.this,
+            "animation",
+            Animation.FULL);
+
+    public final StyleableObjectProperty<Animation> animationProperty() {
+        return this.animation;
+    }
+
+    public final Animation getAnimation() {
+        return this.animationProperty().get();
+    }
+
+    public final void setAnimation(final Animation animation) {
+        this.animationProperty().set(animation);
+    }
+
+    /**
+     * specifies the frames per second of the {@link Animation#ROTATE} animation
+     */
+    private StyleableDoubleProperty frameRate = new SimpleStyleableDoubleProperty(StyleableProperties.FRAME_RATE,
+            JFXSpinner.this,
+            "frame_rate",
+            15.0);
+
+    public final StyleableDoubleProperty frameRateProperty() {
+        return this.frameRate;
+    }
+
+    public final double getFrameRate() {
+        return this.frameRateProperty().get();
+    }
+
+    public final void setFrameRate(final double frameRate) {
+        this.frameRateProperty().set(frameRate);
+    }
+
     private static class StyleableProperties {
         private static final CssMetaData<JFXSpinner, Number> RADIUS =
                 new CssMetaData<JFXSpinner, Number>("-jfx-radius",
@@ -148,6 +210,33 @@ public class JFXSpinner extends ProgressIndicator {
                     }
                 };
 
+        private static final CssMetaData<JFXSpinner, Animation> ANIMATION =
+                new CssMetaData<JFXSpinner, Animation>("-jfx-animation",
+                        new EnumConverter<>(Animation.class), Animation.FULL, true) {
+                    @Override
+                    public boolean isSettable(JFXSpinner control) {
+                        return control.animation == null || !control.animation.isBound();
+                    }
+
+                    @Override
+                    public StyleableObjectProperty<Animation> getStyleableProperty(JFXSpinner control) {
+                        return control.animation;
+                    }
+                };
+
+        private static final CssMetaData<JFXSpinner, Number> FRAME_RATE =
+                new CssMetaData<JFXSpinner, Number>("-jfx-frame-rate",
+                        SizeConverter.getInstance(), 15, true) {
+                    @Override
+                    public boolean isSettable(JFXSpinner control) {
+                        return control.frameRate == null || !control.frameRate.isBound();
+                    }
+
+                    @Override
+                    public StyleableDoubleProperty getStyleableProperty(JFXSpinner control) {
+                        return control.frameRate;
+                    }
+                };
 
         private static final List<CssMetaData<? extends Styleable, ?>> CHILD_STYLEABLES;
 
@@ -156,7 +245,9 @@ public class JFXSpinner extends ProgressIndicator {
                     new ArrayList<>(ProgressIndicator.getClassCssMetaData());
             Collections.addAll(styleables,
                     RADIUS,
-                    STARTING_ANGLE
+                    STARTING_ANGLE,
+                    ANIMATION,
+                    FRAME_RATE
             );
             CHILD_STYLEABLES = Collections.unmodifiableList(styleables);
         }
@@ -25,7 +25,10 @@ import javafx.animation.Interpolator;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
+import javafx.beans.InvalidationListener;
+import javafx.scene.CacheHint;
 import javafx.scene.Group;
+import javafx.scene.Scene;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.StackPane;
@@ -35,6 +38,8 @@ import javafx.scene.shape.Arc;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
+import javafx.stage.Stage;
+import javafx.stage.Window;
 import javafx.util.Duration;
 
 import java.util.Collections;
@@ -56,6 +61,10 @@ public class JFXSpinnerSkin extends BehaviorSkinBase<JFXSpinner, BehaviorBase<JF
     private final Rectangle fillRect;
     private double arcLength = -1;
     private Text text;
+    private Scene scene;
+    private Window window;
+    private final InvalidationListener windowStateListener = observable -> updateAnimation();
+    private final InvalidationListener sceneWindowListener = observable -> watchWindow();
 
     public JFXSpinnerSkin(JFXSpinner control) {
         super(control, new BehaviorBase<JFXSpinner>(control, Collections.emptyList()));
@@ -99,6 +108,9 @@ public class JFXSpinnerSkin extends BehaviorSkinBase<JFXSpinner, BehaviorBase<JF
         registerChangeListener(control.visibleProperty(), "VISIBLE");
         registerChangeListener(control.parentProperty(), "PARENT");
         registerChangeListener(control.sceneProperty(), "SCENE");
+        registerChangeListener(control.animationProperty(), "ANIMATION");
+        registerChangeListener(control.frameRateProperty(), "FRAME_RATE");
+        watchScene();
     }
 
     @Override
@@ -113,20 +125,56 @@ public class JFXSpinnerSkin extends BehaviorSkinBase<JFXSpinner, BehaviorBase<JF
         } else if ("PARENT".equals(p)) {
             updateAnimation();
         } else if ("SCENE".equals(p)) {
-            updateAnimation();
+            watchScene();
+        } else if ("ANIMATION".equals(p) || "FRAME_RATE".equals(p)) {
+            if (timeline != null || getSkinnable().isIndeterminate()) {
+                clearAnimation();
+                createTransition();
+            }
         }
     }
 
+    /**
+     * Follow the window the spinner is in, so the animation is paused while it is hidden or iconified
+     */
+    private void watchScene() {
+        if (scene != null) scene.windowProperty().removeListener(sceneWindowListener);
+        scene = getSkinnable().getScene();
+        if (scene != null) scene.windowProperty().addListener(sceneWindowListener);
+        watchWindow();
+    }
+
+    private void watchWindow() {
+        if (window != null) {
+            window.showingProperty().removeListener(windowStateListener);
+            if (window instanceof Stage) ((Stage) window).iconifiedProperty().removeListener(windowStateListener);
+        }
+        window = scene != null ? scene.getWindow() : null;
+        if (window != null) {
+            window.showingProperty().addListener(windowStateListener);
+            if (window instanceof Stage) ((Stage) window).iconifiedProperty().addListener(windowStateListener);
+        }
+        updateAnimation();
+    }
+
+    private boolean isShowing() {
+        ProgressIndicator control = getSkinnable();
+        return control.isVisible() && control.getParent() != null && window != null && window.isShowing()
+                && !(window instanceof Stage && ((Stage) window).isIconified());
+    }
+
     private void initialize() {
         if (getSkinnable().isIndeterminate()) {
             if (timeline == null) {
                 createTransition();
-                if (getSkinnable().impl_isTreeVisible()) {
+                if (timeline != null && isShowing()) {
                     timeline.play();
                 }
             }
         } else {
             clearAnimation();
+            arcPane.setCache(false);
+            arcPane.setRotate(0);
             arc.setStartAngle(90);
             updateProgress();
         }
@@ -163,6 +211,9 @@ public class JFXSpinnerSkin extends BehaviorSkinBase<JFXSpinner, BehaviorBase<JF
             if (timeline == null) {
                 createTransition();
             }
+            if (timeline == null) {
+                return;
+            }
             if (pause) {
                 timeline.pause();
             } else {
@@ -172,10 +223,7 @@ public class JFXSpinnerSkin extends BehaviorSkinBase<JFXSpinner, BehaviorBase<JF
     }
 
     private void updateAnimation() {
-        ProgressIndicator control = getSkinnable();
-        final boolean isTreeVisible = control.isVisible() &&
-                                      control.getParent() != null &&
-                                      control.getScene() != null;
+        final boolean isTreeVisible = isShowing();
         if (timeline != null) {
             pauseTimeline(!isTreeVisible);
         } else if (isTreeVisible) {
@@ -276,6 +324,14 @@ public class JFXSpinnerSkin extends BehaviorSkinBase<JFXSpinner, BehaviorBase<JF
             arc.setStroke(blueColor);
         }
 
+        JFXSpinner.Animation animation = control.getAnimation();
+        if (animation == JFXSpinner.Animation.STATIC || animation == JFXSpinner.Animation.ROTATE) {
+            createCheapTransition(animation);
+            return;
+        }
+        arcPane.setCache(false);
+        arcPane.setRotate(0);
+
         KeyFrame[] blueFrame = getKeyFrames(0, 0, initialColor == null ? blueColor : initialColor);
         KeyFrame[] redFrame = getKeyFrames(450, 1.4, initialColor == null ? redColor : initialColor);
         KeyFrame[] yellowFrame = getKeyFrames(900, 2.8, initialColor == null ? yellowColor : initialColor);
@@ -310,7 +366,40 @@ public class JFXSpinnerSkin extends BehaviorSkinBase<JFXSpinner, BehaviorBase<JF
             endingFrame);
         timeline.setCycleCount(Timeline.INDEFINITE);
         timeline.setDelay(Duration.ZERO);
-        timeline.playFromStart();
+        if (isShowing()) {
+            timeline.playFromStart();
+        }
+    }
+
+    /**
+     * A fixed arc, either static or rotated as a cached bitmap in discrete steps at the configured frame rate,
+     * so the scene is only rendered on those frames.
+     */
+    private void createCheapTransition(JFXSpinner.Animation animation) {
+        if (timeline != null) {
+            timeline.stop();
+            timeline.getKeyFrames().clear();
+            timeline = null;
+        }
+        arc.setLength(270);
+        arc.setStartAngle(90 + control.getStartingAngle());
+        if (animation == JFXSpinner.Animation.STATIC) {
+            arcPane.setCache(false);
+            arcPane.setRotate(0);
+            return;
+        }
+
+        arcPane.setCache(true);
+        arcPane.setCacheHint(CacheHint.ROTATE);
+        final double frameRate = Math.max(1, control.getFrameRate());
+        // One turn per second
+        final double step = 360 / frameRate;
+        timeline = new Timeline(new KeyFrame(Duration.seconds(1 / frameRate),
+            event -> arcPane.setRotate((arcPane.getRotate() + step) % 360)));
+        timeline.setCycleCount(Timeline.INDEFINITE);
+        if (isShowing()) {
+            timeline.playFromStart();
+        }
     }
 
     private void clearAnimation() {
@@ -325,6 +414,13 @@ public class JFXSpinnerSkin extends BehaviorSkinBase<JFXSpinner, BehaviorBase<JF
     public void dispose() {
         super.dispose();
         clearAnimation();
+        if (scene != null) scene.windowProperty().removeListener(sceneWindowListener);
+        if (window != null) {
+            window.showingProperty().removeListener(windowStateListener);
+            if (window instanceof Stage) ((Stage) window).iconifiedProperty().removeListener(windowStateListener);
+        }
+        scene = null;
+        window = null;
         arc = null;
         track = null;
         control = null;
@@ -0,0 +1,25 @@
+package fxlauncher;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AppProcessTest {
+    private final Path cacheDir = Paths.get("cache");
+
+    @Test
+    public void expandsRamFraction() {
+        assertTrue(AppProcess.expand("-Xmx${ram:0.25}", cacheDir).matches("-Xmx[0-9]+m"));
+        assertTrue(AppProcess.expand("-Xmx${ram:.5}", cacheDir).matches("-Xmx[0-9]+m"));
+    }
+
+    @Test
+    public void leavesMalformedRamUnexpanded() {
+        assertEquals("-Xmx${ram:1.2.3}", AppProcess.expand("-Xmx${ram:1.2.3}", cacheDir));
+        assertEquals("-Xmx${ram:.}", AppProcess.expand("-Xmx${ram:.}", cacheDir));
+    }
+}
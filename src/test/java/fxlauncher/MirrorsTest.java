@@ -0,0 +1,42 @@
+package fxlauncher;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class MirrorsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void malformedHealthIsTreatedAsHealthy() throws Exception {
+        Path cacheDir = folder.newFolder("cache").toPath();
+        URI a = URI.create("http://a.example/"), b = URI.create("http://b.example/"), c = URI.create("http://c.example/");
+        long now = System.currentTimeMillis();
+        Files.write(cacheDir.resolve("mirrors.properties"), Arrays.asList(
+                "http\\://a.example/=5",
+                "http\\://b.example/=x," + now,
+                "http\\://c.example/=5," + now), StandardCharsets.ISO_8859_1);
+
+        Mirrors mirrors = new Mirrors(Arrays.asList(a, b, c), cacheDir);
+        // c is quarantined and moves to the back, a and b are healthy
+        assertEquals(Arrays.asList(a, b, c), mirrors.forFile(0));
+        assertEquals(Arrays.asList(b, a, c), mirrors.forFile(1));
+
+        mirrors.recordFailure(a);
+        mirrors.save();
+        List<String> saved = Files.readAllLines(cacheDir.resolve("mirrors.properties"), StandardCharsets.ISO_8859_1);
+        assertFalse(saved.stream().anyMatch(line -> line.startsWith("http\\://b.example/")));
+        assertEquals(1, saved.stream().filter(line -> line.startsWith("http\\://a.example/=1,")).count());
+    }
+}
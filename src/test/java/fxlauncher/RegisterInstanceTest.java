@@ -0,0 +1,64 @@
+package fxlauncher;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.bind.JAXB;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RegisterInstanceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void registersInstanceWhenFileSyncFails() throws Exception {
+        Path app = folder.newFolder("app").toPath();
+        Files.write(app.resolve("app.jar"), new byte[]{1, 2, 3});
+        FXManifest manifest = CreateManifest.create(app.toUri(), "app.Main", app);
+        JAXB.marshal(manifest, app.resolve("app.xml").toFile());
+        // Only the manifest can be downloaded
+        Files.delete(app.resolve("app.jar"));
+        Path cacheDir = folder.newFolder("cache").toPath();
+
+        HeadlessMainLauncher launcher = new HeadlessMainLauncher(new LauncherParams(Arrays.asList(
+                "--uri=" + app.toUri(), "--cache-dir=" + cacheDir))) {
+            @Override
+            protected void onSyncError(Exception error) {
+                // Start from the cache, like the launcher without --stop-on-update-errors
+            }
+
+            @Override
+            protected void createApplicationEnvironment() {
+            }
+        };
+        launcher.loadManifest();
+        assertFalse(launcher.syncAndPrepare());
+
+        Path instances = cacheDir.resolve(".fxlauncher.instances");
+        assertTrue("No instance registered", Files.isDirectory(instances));
+        File[] registrations = instances.toFile().listFiles();
+        assertEquals(1, registrations.length);
+        String files = new String(Files.readAllBytes(registrations[0].toPath()), StandardCharsets.UTF_8);
+        assertTrue(files.contains("app.jar"));
+
+        // The registration is locked by this JVM. Checked last, closing the channel may release the lock.
+        try (FileChannel channel = FileChannel.open(registrations[0].toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.tryLock(Long.MAX_VALUE - 1, 1, false);
+            fail("Registration is not locked");
+        } catch (OverlappingFileLockException expected) {
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package fxlauncher;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.bind.JAXB;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class SyncFilesTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsCachedFileWhenDownloadFails() throws Exception {
+        Path app = folder.newFolder("app").toPath();
+        Files.write(app.resolve("app.jar"), new byte[]{1, 2, 3});
+        FXManifest manifest = CreateManifest.create(app.toUri(), "app.Main", app);
+        JAXB.marshal(manifest, app.resolve("app.xml").toFile());
+        // The new version can't be downloaded
+        Files.delete(app.resolve("app.jar"));
+
+        Path cacheDir = folder.newFolder("cache").toPath();
+        byte[] cached = {4, 5};
+        Files.write(cacheDir.resolve("app.jar"), cached);
+
+        HeadlessMainLauncher launcher = new HeadlessMainLauncher(new LauncherParams(Arrays.asList(
+                "--uri=" + app.toUri(), "--cache-dir=" + cacheDir)));
+        launcher.loadManifest();
+        try {
+            launcher.syncFiles();
+            fail("Sync of a missing file succeeded");
+        } catch (Exception expected) {
+        } finally {
+            launcher.unlockCacheDir();
+        }
+
+        assertArrayEquals(cached, Files.readAllBytes(cacheDir.resolve("app.jar")));
+        assertFalse(Files.exists(cacheDir.resolve("app.jar.part")));
+    }
+}
@@ -0,0 +1,24 @@
+package fxlauncher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SyncMetricsTest {
+    @Test
+    public void p95WaitsForEnoughSamples() {
+        SyncMetrics metrics = new SyncMetrics();
+        assertEquals(-1, metrics.timeToFirstByteP95(1));
+        metrics.timeToFirstByte(10);
+        assertEquals(-1, metrics.timeToFirstByteP95(2));
+        assertEquals(10, metrics.timeToFirstByteP95(1));
+    }
+
+    @Test
+    public void p95OnlyCountsRecentSamples() {
+        SyncMetrics metrics = new SyncMetrics();
+        for (int i = 0; i < 1000; i++) metrics.timeToFirstByte(5000);
+        for (int i = 1; i <= 10000; i++) metrics.timeToFirstByte(i % 100);
+        assertEquals(95, metrics.timeToFirstByteP95(20), 4);
+    }
+}